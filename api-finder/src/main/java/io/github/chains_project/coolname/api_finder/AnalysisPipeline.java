@@ -0,0 +1,186 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.chains_project.coolname.api_finder.model.FullMethodsPathData;
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.model.PathTree;
+import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.PackageMatcher;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sootup.callgraph.CallGraph;
+import sootup.core.signatures.MethodSignature;
+import sootup.java.core.views.JavaView;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the path search, the extraction and the writing of the full methods report at the same time, instead of one
+ * after the other. Each path is handed to the extraction as soon as it is found, and each record is appended to the
+ * report as soon as it is extracted, so the first results are on disk long before the search ends.
+ * <p>
+ * The stages are connected by bounded queues: a stage that runs ahead blocks until the next one catches up, so only a
+ * few paths and records are in memory at any time, and the paths are not collected into a tree. The price is that
+ * the report is written in the order the paths are found, not sorted by condition count and length.
+ * <p>
+ * There is one extraction thread. The Spoon model and the state of the extractors are shared and not meant to be used
+ * by several threads at once. For the same reason, the heap budget only drops the caches on the extraction thread,
+ * the path search only degrades to searches without statistics.
+ */
+class AnalysisPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisPipeline.class);
+    // The number of paths (and records) that may wait for the next stage
+    private static final int QUEUE_CAPACITY = 256;
+    // Marks the end of a queue, compared by reference
+    private static final ThirdPartyPath END_OF_PATHS = new ThirdPartyPath(new PathTree(), -1);
+    private static final FullMethodsPathData END_OF_RECORDS = new FullMethodsPathData(null, null, List.of(),
+            List.of(), List.of(), List.of(), List.of(), List.of(), null, 0);
+
+    private final BlockingQueue<ThirdPartyPath> paths = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<FullMethodsPathData> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final JavaView view;
+    private final Set<MethodSignature> entryPoints;
+    private final Path packageMapPath;
+    private final String sourceRootPath;
+    private final List<File> jacocoHtmlDirs;
+    private final String reportPath;
+    private final long startNanos = System.nanoTime();
+
+    AnalysisPipeline(JavaView view, Set<MethodSignature> entryPoints, Path packageMapPath, String sourceRootPath,
+                     List<File> jacocoHtmlDirs, String reportPath) {
+        this.view = view;
+        this.entryPoints = entryPoints;
+        this.packageMapPath = packageMapPath;
+        this.sourceRootPath = sourceRootPath;
+        this.jacocoHtmlDirs = jacocoHtmlDirs;
+        this.reportPath = reportPath;
+    }
+
+    /**
+     * Search, extract and write until all paths are written. If a stage fails, the other stages are stopped and the
+     * failure is thrown.
+     */
+    void run(CallGraph cg) throws Exception {
+        // Loaded lazily otherwise, and the path search and the writer both use it
+        PackageMatcher.load(packageMapPath);
+        // Not the path search until the extraction takes over, which may start later
+        HeapBudget.setCacheOwner(Thread.currentThread());
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        try {
+            stages.submit(PhaseRecorder.worker(() -> search(cg)));
+            stages.submit(PhaseRecorder.worker(this::extract));
+            stages.submit(PhaseRecorder.worker(this::write));
+            for (int i = 0; i < 3; i++) {
+                try {
+                    stages.take().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        } finally {
+            // Interrupts the stages that wait for a failed one
+            executor.shutdownNow();
+            HeapBudget.setCacheOwner(null);
+        }
+    }
+
+    private Void search(CallGraph cg) throws InterruptedException {
+        List<PathStats> allPathStats = new ArrayList<>();
+        try {
+            MethodExtractor.collectThirdPartyPaths(cg, entryPoints, packageMapPath, jacocoHtmlDirs,
+                    path -> put(paths, new PathTree().add(path)), allPathStats);
+        } catch (CancellationException e) {
+            throw new InterruptedException("The path search was stopped");
+        }
+        PathWriter.writePathStatsToJson(allPathStats, reportPath);
+        paths.put(END_OF_PATHS);
+        log.info("Path search finished after {} ms", elapsedMillis());
+        return null;
+    }
+
+    private Void extract() throws InterruptedException {
+        HeapBudget.setCacheOwner(Thread.currentThread());
+        // The paths come in the order they were found, the same indexes as in the phased run
+        Checkpoint checkpoint = Checkpoint.current();
+        List<FullMethodsPathData> extracted = checkpoint == null ? List.of() : checkpoint.completedRecords();
+        int index = 0;
+        for (ThirdPartyPath tp = paths.take(); tp != END_OF_PATHS; tp = paths.take(), index++) {
+            HeapBudget.check();
+            FullMethodsPathData data;
+            if (index < extracted.size()) {
+                data = extracted.get(index);
+            } else {
+                List<MethodSignature> projectPath = tp.projectPath();
+                int conditionCount = Metrics.time("conditionCount",
+                        () -> RecordCounter.countConditionsInPath(projectPath, sourceRootPath));
+                data = PathWriter.toPathData(tp, projectPath, conditionCount, view, sourceRootPath);
+                if (checkpoint != null) {
+                    checkpoint.recordDone(index, PathWriter.hasAllSources(data) ? data : null);
+                }
+            }
+            // Same as the phased run, no record without all of its sources
+            if (data != null && PathWriter.hasAllSources(data)) {
+                records.put(data);
+            } else {
+                Metrics.increment("paths.skipped");
+            }
+        }
+        records.put(END_OF_RECORDS);
+        return null;
+    }
+
+    private Void write() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        File outputFile = PathWriter.fullMethodsFile(reportPath);
+        try (PathWriter.RecordWriter writer = PathWriter.openWriter(mapper, outputFile, packageMapPath)) {
+            for (FullMethodsPathData data = records.take(); data != END_OF_RECORDS; data = records.take()) {
+                writer.write(data);
+                if (writer.written() == 1) {
+                    log.info("First path written after {} ms", elapsedMillis());
+                }
+                // Flush whenever the writer caught up, so that readers of the report see the records soon
+                if (records.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            Metrics.add("paths.written", writer.written());
+            log.info("Wrote {} full methods paths in the order they were found to {}", writer.written(),
+                    outputFile.getAbsolutePath());
+        }
+        return null;
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Put a path into the queue from the path search, which cannot throw checked exceptions.
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the extraction");
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.chains_project.coolname.api_finder.model.MethodId;
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.model.PathTree;
+import io.github.chains_project.coolname.api_finder.model.ReachabilityIndex;
+import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sootup.callgraph.CallGraph;
+import sootup.core.signatures.MethodSignature;
+import sootup.java.core.views.JavaView;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Keeps the SootUp view, the call graph, the discovered paths and the Spoon model of one project in memory and
+ * answers queries about them. This avoids paying for a complete process run for every question the test
+ * generation loop asks.
+ * <p>
+ * The protocol is JSON-RPC 2.0 with one JSON object per line, either over stdin/stdout or over a socket bound to
+ * the loopback interface. Supported methods:
+ * entryPoints - all entry points with at least one path
+ * paths {entryPoint} - the paths of an entry point (all paths if no entry point is given)
+ * source {method} - the source code of a method
+ * slice {entryPoint, thirdPartyMethod} - the method slices along the path
+ * conditions {entryPoint, thirdPartyMethod} - the number of conditions along the path
+ * reaching {thirdPartyMethod} - the entry points that reach a third-party method, or any third-party method in a
+ * package or class (e.g. org.bouncycastle), also without a path in the analysis result
+ * reached {entryPoint} - the third-party methods an entry point reaches
+ * shutdown - stop the server
+ * Methods can be referred to either by the filtered name (org.example.Foo.bar) or by the full SootUp signature.
+ * <p>
+ * Requests are answered one at a time, because the caches of the extractors are not thread-safe.
+ */
+public class AnalysisServer {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisServer.class);
+    private static final int PARSE_ERROR = -32700;
+    private static final int INVALID_REQUEST = -32600;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_PARAMS = -32602;
+    private static final int INTERNAL_ERROR = -32603;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonNodeFactory nodes = JsonNodeFactory.instance;
+    private final String sourceRootPath;
+    // Paths grouped by the filtered name of their entry point, in discovery order
+    private final Map<String, List<ThirdPartyPath>> pathsByEntryPoint = new LinkedHashMap<>();
+    // Methods of the call graph by their full signature and by their filtered name
+    private final Map<String, MethodSignature> methodsByName = new HashMap<>();
+    private ReachabilityIndex reachability;
+    private boolean running = true;
+
+    private AnalysisServer(String sourceRootPath) {
+        this.sourceRootPath = sourceRootPath;
+    }
+
+    /**
+     * Load a project: build the view, the call graph, find all paths and build the Spoon model.
+     * This is as expensive as a process run, but it happens only once per server.
+     */
+    public static AnalysisServer load(String pathToJar, String packageName, Path packageMapPath,
+                                      String sourceRootPath, List<File> jacocoHtmlDirs) {
+        long start = System.nanoTime();
+        AnalysisServer server = new AnalysisServer(sourceRootPath);
+        MethodExtractor.loadIgnoredPrefixes(packageName);
+        JavaView view = MethodExtractor.createJavaView(pathToJar, packageName);
+        Set<MethodSignature> entryPoints = MethodExtractor.detectEntryPoints(view, packageName);
+        log.info("Found {} public methods as entry points.", entryPoints.size());
+        CallGraph cg = MethodExtractor.buildCallGraph(view, entryPoints);
+        server.reachability = MethodExtractor.buildReachabilityIndex(cg, entryPoints, packageMapPath,
+                jacocoHtmlDirs);
+        PathTree thirdPartyPaths = new PathTree();
+        List<PathStats> allPathStats = new ArrayList<>();
+        MethodExtractor.collectThirdPartyPaths(cg, entryPoints, packageMapPath, jacocoHtmlDirs, thirdPartyPaths,
+                allPathStats);
+        for (ThirdPartyPath tp : thirdPartyPaths.paths()) {
+            server.pathsByEntryPoint
+                    .computeIfAbsent(MethodExtractor.getFilteredMethodSignature(tp.entryPoint()),
+                            k -> new ArrayList<>())
+                    .add(tp);
+        }
+        for (MethodSignature method : cg.getMethodSignatures()) {
+            MethodId id = MethodId.of(method);
+            server.methodsByName.put(id.fullName(), method);
+            // For overloaded methods the filtered name is ambiguous, the first one wins.
+            server.methodsByName.putIfAbsent(id.filteredName(), method);
+        }
+        if (sourceRootPath != null) {
+            // Build the Spoon model now instead of on the first query
+            SourceCodeExtractor.getModel(sourceRootPath);
+        }
+        log.info("Loaded {} paths for {} entry points in {} s", thirdPartyPaths.size(),
+                server.pathsByEntryPoint.size(), (System.nanoTime() - start) / 1_000_000_000);
+        return server;
+    }
+
+    /**
+     * Answer requests read line by line from the input until the input ends or a shutdown request arrives.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            writer.write(mapper.writeValueAsString(handle(line)));
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /**
+     * Accept connections on the given port of the loopback interface and answer their requests.
+     * Connections are served one after the other.
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            log.info("Listening on {}:{}", serverSocket.getInetAddress().getHostAddress(),
+                    serverSocket.getLocalPort());
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket.getInputStream(), socket.getOutputStream());
+                } catch (IOException e) {
+                    log.warn("Connection closed with an error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a single request line and create the response object.
+     */
+    JsonNode handle(String line) {
+        JsonNode request;
+        try {
+            request = mapper.readTree(line);
+        } catch (IOException e) {
+            return error(null, PARSE_ERROR, "Parse error: " + e.getMessage());
+        }
+        JsonNode id = request.get("id");
+        if (!request.hasNonNull("method")) {
+            return error(id, INVALID_REQUEST, "Missing method");
+        }
+        String method = request.get("method").asText();
+        JsonNode params = request.has("params") ? request.get("params") : nodes.objectNode();
+        long start = System.nanoTime();
+        try {
+            JsonNode result = switch (method) {
+                case "entryPoints" -> entryPoints();
+                case "paths" -> paths(params);
+                case "source" -> source(params);
+                case "slice" -> slice(params);
+                case "conditions" -> conditions(params);
+                case "reaching" -> reaching(params);
+                case "reached" -> reached(params);
+                case "shutdown" -> shutdown();
+                default -> null;
+            };
+            if (result == null) {
+                return error(id, METHOD_NOT_FOUND, "Unknown method: " + method);
+            }
+            log.debug("Answered {} in {} ms", method, (System.nanoTime() - start) / 1_000_000);
+            ObjectNode response = nodes.objectNode();
+            response.put("jsonrpc", "2.0");
+            response.set("id", id);
+            response.set("result", result);
+            return response;
+        } catch (IllegalArgumentException e) {
+            return error(id, INVALID_PARAMS, e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to answer {}", method, e);
+            return error(id, INTERNAL_ERROR, e.getMessage());
+        }
+    }
+
+    private JsonNode entryPoints() {
+        ArrayNode result = nodes.arrayNode();
+        pathsByEntryPoint.keySet().forEach(result::add);
+        return result;
+    }
+
+    private JsonNode paths(JsonNode params) {
+        ArrayNode result = nodes.arrayNode();
+        if (params.hasNonNull("entryPoint")) {
+            String entryPoint = filteredName(params.get("entryPoint").asText());
+            pathsByEntryPoint.getOrDefault(entryPoint, List.of()).forEach(tp -> result.add(toJson(tp)));
+        } else {
+            pathsByEntryPoint.values().forEach(paths -> paths.forEach(tp -> result.add(toJson(tp))));
+        }
+        return result;
+    }
+
+    private JsonNode source(JsonNode params) {
+        MethodSignature method = findMethod(requireText(params, "method"));
+        requireSources();
+        return nodes.textNode(SourceCodeExtractor.extractMethodFromSource(method, sourceRootPath));
+    }
+
+    private JsonNode slice(JsonNode params) {
+        ThirdPartyPath tp = findPath(params);
+        requireSources();
+        ArrayNode result = nodes.arrayNode();
+        MethodSlicer.extractMethodSlices(tp.path(), sourceRootPath).forEach(result::add);
+        return result;
+    }
+
+    private JsonNode conditions(JsonNode params) {
+        ThirdPartyPath tp = findPath(params);
+        requireSources();
+        // Same as in the full methods report, the third-party method itself is not counted
+        return nodes.numberNode(RecordCounter.countConditionsInPath(tp.projectPath(), sourceRootPath));
+    }
+
+    private JsonNode reaching(JsonNode params) {
+        ArrayNode result = nodes.arrayNode();
+        reachability.entryPointsReaching(filteredName(requireText(params, "thirdPartyMethod")))
+                .forEach(result::add);
+        return result;
+    }
+
+    private JsonNode reached(JsonNode params) {
+        ArrayNode result = nodes.arrayNode();
+        reachability.thirdPartyMethodsReachedBy(filteredName(requireText(params, "entryPoint")))
+                .forEach(result::add);
+        return result;
+    }
+
+    private JsonNode shutdown() {
+        running = false;
+        return nodes.booleanNode(true);
+    }
+
+    private ThirdPartyPath findPath(JsonNode params) {
+        String entryPoint = filteredName(requireText(params, "entryPoint"));
+        String thirdPartyMethod = filteredName(requireText(params, "thirdPartyMethod"));
+        return pathsByEntryPoint.getOrDefault(entryPoint, List.of()).stream()
+                .filter(tp -> MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod())
+                        .equals(thirdPartyMethod))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No path from " + entryPoint + " to "
+                        + thirdPartyMethod));
+    }
+
+    private MethodSignature findMethod(String name) {
+        MethodSignature method = methodsByName.get(name);
+        if (method == null) {
+            throw new IllegalArgumentException("Method not found in call graph: " + name);
+        }
+        return method;
+    }
+
+    /**
+     * Accept both full signatures and filtered names, and turn them into the filtered name.
+     */
+    private String filteredName(String name) {
+        MethodSignature method = methodsByName.get(name);
+        return method != null ? MethodExtractor.getFilteredMethodSignature(method) : name;
+    }
+
+    private void requireSources() {
+        if (sourceRootPath == null) {
+            throw new IllegalArgumentException("The server was started without a source code path");
+        }
+    }
+
+    private static String requireText(JsonNode params, String field) {
+        if (!params.hasNonNull(field)) {
+            throw new IllegalArgumentException("Missing parameter: " + field);
+        }
+        return params.get(field).asText();
+    }
+
+    private JsonNode toJson(ThirdPartyPath tp) {
+        ObjectNode node = nodes.objectNode();
+        node.put("entryPoint", MethodExtractor.getFilteredMethodSignature(tp.entryPoint()));
+        node.put("thirdPartyMethod", MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod()));
+        ArrayNode path = node.putArray("path");
+        tp.path().forEach(m -> path.add(MethodExtractor.getFilteredMethodSignature(m)));
+        return node;
+    }
+
+    private JsonNode error(JsonNode id, int code, String message) {
+        ObjectNode response = nodes.objectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", id);
+        ObjectNode error = response.putObject("error");
+        error.put("code", code);
+        error.put("message", message);
+        return response;
+    }
+}
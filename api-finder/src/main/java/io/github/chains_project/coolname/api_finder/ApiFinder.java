@@ -0,0 +1,273 @@
+package io.github.chains_project.coolname.api_finder;
+
+import io.github.chains_project.coolname.api_finder.model.PhaseMetrics;
+import io.github.chains_project.coolname.api_finder.utils.BoundedCache;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import io.github.chains_project.coolname.api_finder.utils.Progress;
+import io.github.chains_project.coolname.api_finder.utils.SearchBudget;
+import io.github.chains_project.coolname.api_finder.utils.Session;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * An analysis session that owns its configuration, caches, counters and Spoon model, so that several projects can be
+ * analyzed in parallel threads of one JVM, or the analysis can be embedded in a service, without the sessions seeing
+ * each other's state. The session is configured once with a {@link Builder}, and can analyze one project after the
+ * other, as the process command does.
+ * <p>
+ * The extractors keep their static API. Their state lives in {@link SessionLocal} fields, and a session binds the
+ * calling thread (and the threads it starts) to its state while it runs. Code that uses the extractors without a
+ * session works in the global session, like before.
+ * <pre>{@code
+ * ApiFinder finder = ApiFinder.builder().topK(50).deadline(Duration.ofHours(2)).build();
+ * finder.process(jar, "out/third_party_apis.json", "org.example", packageMap, sources, jacocoDirs);
+ * }</pre>
+ */
+public final class ApiFinder {
+
+    private final Session session = new Session();
+
+    private ApiFinder(Builder builder) {
+        session.run(builder::apply);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Analyze a project and write the reports, see
+     * {@link MethodExtractor#process(String, String, String, Path, String, List)}.
+     */
+    public void process(String pathToJar, String reportPath, String packageName, Path packageMapPath,
+                        String sourceRootPath, List<File> jacocoHtmlDirs) {
+        session.run(() -> MethodExtractor.process(pathToJar, reportPath, packageName, packageMapPath, sourceRootPath,
+                jacocoHtmlDirs));
+    }
+
+    /**
+     * Analyze a project without its sources and coverage.
+     */
+    public void process(String pathToJar, String reportPath, String packageName, Path packageMapPath) {
+        session.run(() -> MethodExtractor.process(pathToJar, reportPath, packageName, packageMapPath));
+    }
+
+    /**
+     * Run other parts of the analysis in this session, e.g. {@link AnalysisServer#load}.
+     */
+    public <T> T call(Callable<T> body) throws Exception {
+        return session.call(body);
+    }
+
+    /**
+     * Forget the caches and the loaded project, e.g. before a measured run of the same project.
+     */
+    public void clearCaches() {
+        session.run(MethodExtractor::clearCaches);
+    }
+
+    /**
+     * The phases of the last analysis of this session.
+     */
+    public List<PhaseMetrics> phases() {
+        return callUnchecked(PhaseRecorder::getPhases);
+    }
+
+    /**
+     * The counters of the last analysis of this session, sorted by name.
+     */
+    public Map<String, Long> metrics() {
+        return callUnchecked(Metrics::snapshot);
+    }
+
+    private <T> T callUnchecked(Callable<T> body) {
+        List<T> result = new ArrayList<>(1);
+        session.run(() -> {
+            try {
+                result.add(body.call());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return result.get(0);
+    }
+
+    /**
+     * The configuration of a session, the same options as on the command line. Everything is off or unlimited by
+     * default, except for the progress reports. A builder can build several sessions with the same configuration.
+     */
+    public static final class Builder {
+
+        private final Map<String, Long> cacheLimits = new LinkedHashMap<>();
+        private long maxVisitedNodes;
+        private Duration maxPairTime = Duration.ZERO;
+        private Duration deadline = Duration.ZERO;
+        private long heapBudget;
+        private int topK;
+        private int shards;
+        private ShardedPathWriter.ShardBy shardBy = ShardedPathWriter.ShardBy.ENTRY_POINT;
+        private PathWriter.Format format = PathWriter.Format.FULL;
+        private boolean pipelined;
+        private boolean checkpoint;
+        private boolean resume;
+        private boolean lowMemory;
+        private boolean reachabilityIndex;
+        private int sampleSize;
+        private long sampleSeed;
+        private Duration progressInterval = Duration.ofMillis(Progress.DEFAULT_INTERVAL_MILLIS);
+        private boolean statusFile;
+
+        private Builder() {
+        }
+
+        /**
+         * The limit of a cache by name, see {@link BoundedCache#configure(Map)}.
+         */
+        public Builder cacheLimit(String cache, long limit) {
+            cacheLimits.put(cache, limit);
+            return this;
+        }
+
+        public Builder maxVisitedNodes(long nodes) {
+            maxVisitedNodes = nodes;
+            return this;
+        }
+
+        public Builder maxPairTime(Duration time) {
+            maxPairTime = time;
+            return this;
+        }
+
+        public Builder deadline(Duration time) {
+            deadline = time;
+            return this;
+        }
+
+        /**
+         * The heap the session may retain, see {@link HeapBudget}. The heap is the one of the whole JVM.
+         */
+        public Builder heapBudget(long bytes) {
+            heapBudget = bytes;
+            return this;
+        }
+
+        public Builder topK(int k) {
+            topK = k;
+            return this;
+        }
+
+        Builder shards(int count, ShardedPathWriter.ShardBy by) {
+            shards = count;
+            shardBy = by;
+            return this;
+        }
+
+        public Builder format(PathWriter.Format reportFormat) {
+            format = reportFormat;
+            return this;
+        }
+
+        public Builder pipelined(boolean enabled) {
+            pipelined = enabled;
+            return this;
+        }
+
+        public Builder checkpoint(boolean enabled) {
+            checkpoint = enabled;
+            return this;
+        }
+
+        public Builder resume(boolean enabled) {
+            resume = enabled;
+            return this;
+        }
+
+        public Builder lowMemory(boolean enabled) {
+            lowMemory = enabled;
+            return this;
+        }
+
+        public Builder reachabilityIndex(boolean enabled) {
+            reachabilityIndex = enabled;
+            return this;
+        }
+
+        /**
+         * Search the paths of a random sample of the pairs only, see {@link RandomMethodExtractor}.
+         */
+        public Builder sample(int size, long seed) {
+            sampleSize = size;
+            sampleSeed = seed;
+            return this;
+        }
+
+        /**
+         * How often the progress of the path search and of the extraction is reported, zero turns the reports off.
+         * Once a minute by default, see {@link Progress}.
+         */
+        public Builder progressInterval(Duration interval) {
+            progressInterval = interval;
+            return this;
+        }
+
+        /**
+         * Also write the progress reports to progress.json next to the report.
+         */
+        public Builder statusFile(boolean enabled) {
+            statusFile = enabled;
+            return this;
+        }
+
+        /**
+         * A new session with this configuration.
+         *
+         * @throws IllegalArgumentException if the options cannot be combined
+         */
+        public ApiFinder build() {
+            if (shards > 0 && format != PathWriter.Format.FULL) {
+                throw new IllegalArgumentException("Sharding writes the FULL format only");
+            }
+            if (pipelined && topK > 0) {
+                throw new IllegalArgumentException("The top k paths need all paths before any is written, they " +
+                        "cannot be pipelined");
+            }
+            if (sampleSize < 0) {
+                throw new IllegalArgumentException("The sample size cannot be negative");
+            }
+            if (sampleSize > 0 && (pipelined || checkpoint || resume)) {
+                throw new IllegalArgumentException("A sampled analysis cannot be pipelined or checkpointed");
+            }
+            return new ApiFinder(this);
+        }
+
+        /**
+         * Configure the session the current thread is bound to.
+         */
+        private void apply() {
+            MethodExtractor.setPipelined(pipelined);
+            MethodExtractor.setLowMemory(lowMemory);
+            MethodExtractor.setReachabilityIndex(reachabilityIndex);
+            MethodExtractor.setSampling(sampleSize, sampleSeed);
+            Progress.configure(progressInterval.toMillis(), statusFile);
+            Checkpoint.configure(checkpoint, resume);
+            PathWriter.setTopK(topK);
+            PathWriter.setSharding(shards, shardBy);
+            PathWriter.setFormat(format);
+            BoundedCache.configure(cacheLimits);
+            SearchBudget.configure(maxVisitedNodes, maxPairTime.toMillis(), deadline.toMillis());
+            if (heapBudget > 0) {
+                HeapBudget.configure(heapBudget, MethodExtractor::dropCaches);
+            }
+        }
+    }
+}
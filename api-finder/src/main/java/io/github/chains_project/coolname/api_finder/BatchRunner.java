@@ -0,0 +1,156 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.chains_project.coolname.api_finder.model.BatchEntry;
+import io.github.chains_project.coolname.api_finder.model.BatchManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the api-finder over many projects within one JVM, so that class loading and JIT warm-up of SootUp, Spoon and
+ * Jackson are only paid once for the whole sweep.
+ * <p>
+ * Every project is analyzed in its own {@link ApiFinder} session, so it starts with empty caches and does not see the
+ * Spoon types, package maps and coverage results of the others. The projects can therefore be analyzed in parallel
+ * threads. Each project writes its reports (including path-stats.json and coverage.json) to its own folder, so that
+ * the results of different projects do not overwrite each other.
+ */
+public class BatchRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchRunner.class);
+    private static final String DEFAULT_REPORT_NAME = "third_party_apis.json";
+
+    /**
+     * Process all projects listed in the manifest.
+     *
+     * @param manifestPath Path to the JSON manifest with a "projects" list.
+     * @param outputDir    Folder where a sub folder per project is created for projects without a report prefix.
+     * @param builder      The configuration of the session of every project.
+     * @param threads      The number of projects that are analyzed at the same time.
+     * @return The number of projects that failed.
+     */
+    public static int run(Path manifestPath, Path outputDir, ApiFinder.Builder builder, int threads)
+            throws IOException, InterruptedException {
+        List<BatchEntry> entries = readManifest(manifestPath);
+        Path baseDir = manifestPath.toAbsolutePath().getParent();
+        log.info("Running batch of {} projects from {} on {} threads", entries.size(), manifestPath, threads);
+        long batchStart = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            int index = i;
+            results.add(executor.submit(() -> processProject(entries, index, baseDir, outputDir, builder)));
+        }
+        executor.shutdown();
+        // The failed projects in the order of the manifest
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                if (!results.get(i).get()) {
+                    failed.add(projectName(entries.get(i), i));
+                }
+            } catch (ExecutionException e) {
+                log.error("[{}/{}] Failed to process {}", i + 1, entries.size(), projectName(entries.get(i), i),
+                        e.getCause());
+                failed.add(projectName(entries.get(i), i));
+            }
+        }
+        log.info("Batch finished in {} s: {} succeeded, {} failed {}",
+                (System.nanoTime() - batchStart) / 1_000_000_000,
+                entries.size() - failed.size(), failed.size(), failed.isEmpty() ? "" : failed);
+        return failed.size();
+    }
+
+    /**
+     * Analyze one project in a new session, return whether it succeeded.
+     */
+    private static boolean processProject(List<BatchEntry> entries, int i, Path baseDir, Path outputDir,
+                                          ApiFinder.Builder builder) {
+        BatchEntry entry = entries.get(i);
+        String name = projectName(entry, i);
+        log.info("[{}/{}] Processing {}", i + 1, entries.size(), name);
+        long start = System.nanoTime();
+        try {
+            String reportPath = resolveReportPath(entry, name, baseDir, outputDir);
+            builder.build().process(
+                    resolve(baseDir, entry.jarPath()),
+                    reportPath,
+                    entry.packageName(),
+                    Path.of(resolve(baseDir, entry.packageMap())),
+                    resolve(baseDir, entry.sourceCodePath()),
+                    resolveAll(baseDir, entry.jacocoFiles()));
+            log.info("[{}/{}] Finished {} in {} s", i + 1, entries.size(), name,
+                    (System.nanoTime() - start) / 1_000_000_000);
+            return true;
+        } catch (Exception e) {
+            // One broken project should not stop the whole sweep.
+            log.error("[{}/{}] Failed to process {}", i + 1, entries.size(), name, e);
+            return false;
+        }
+    }
+
+    static List<BatchEntry> readManifest(Path manifestPath) throws IOException {
+        ObjectMapper mapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        BatchManifest manifest = mapper.readValue(manifestPath.toFile(), BatchManifest.class);
+        if (manifest.projects() == null) {
+            return List.of();
+        }
+        for (BatchEntry entry : manifest.projects()) {
+            if (entry.jarPath() == null || entry.packageName() == null || entry.packageMap() == null) {
+                throw new IllegalArgumentException("Every batch entry needs jarPath, packageName and packageMap: "
+                        + entry);
+            }
+        }
+        return manifest.projects();
+    }
+
+    static String projectName(BatchEntry entry, int index) {
+        if (entry.name() != null && !entry.name().isBlank()) {
+            return entry.name();
+        }
+        return "project-" + (index + 1);
+    }
+
+    static String resolveReportPath(BatchEntry entry, String name, Path baseDir, Path outputDir)
+            throws IOException {
+        if (entry.reportPrefix() != null) {
+            return resolve(baseDir, entry.reportPrefix());
+        }
+        Path projectDir = outputDir.resolve(name);
+        Files.createDirectories(projectDir);
+        return projectDir.resolve(DEFAULT_REPORT_NAME).toString();
+    }
+
+    static String resolve(Path baseDir, String path) {
+        if (path == null) {
+            return null;
+        }
+        return baseDir.resolve(path).toString();
+    }
+
+    static List<File> resolveAll(Path baseDir, List<String> paths) {
+        if (paths == null) {
+            return new ArrayList<>();
+        }
+        return paths.stream().map(p -> new File(resolve(baseDir, p))).toList();
+    }
+}
@@ -0,0 +1,285 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.chains_project.coolname.api_finder.model.CheckpointPair;
+import io.github.chains_project.coolname.api_finder.model.CheckpointRecord;
+import io.github.chains_project.coolname.api_finder.model.CheckpointState;
+import io.github.chains_project.coolname.api_finder.model.FullMethodsPathData;
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sootup.core.signatures.MethodSignature;
+import sootup.java.core.JavaIdentifierFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Saves the progress of an analysis, so that a run that dies halfway (out of memory, a CI timeout, preemption) can be
+ * resumed without redoing the finished work. The checkpoint is a {@code checkpoint} folder next to the report with
+ * two append-only logs: the completed pairs of the path search, with their paths and path statistics, and the
+ * extracted records of the full methods report. The logs are flushed every few seconds, a line that was cut off by
+ * the crash is ignored.
+ * <p>
+ * A resumed run replays the completed pairs in the order they were logged, so the paths keep their positions in the
+ * analysis result, searches only the remaining pairs, and reuses the records that were already extracted. The call
+ * graph is built again from the jar, the checkpoint is only resumed for the same inputs, see {@link CheckpointState}.
+ * <p>
+ * In a pipelined run, the pairs are logged by the path search and the records by the extraction, at the same time.
+ */
+class Checkpoint implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(Checkpoint.class);
+    private static final long FLUSH_INTERVAL_NANOS = 10_000_000_000L;
+    private static final String STATE_FILE = "state.json";
+    private static final String PAIRS_FILE = "pairs.ndjson";
+    private static final String RECORDS_FILE = "records.ndjson";
+
+    private static final SessionLocal<Settings> settings = SessionLocal.withInitial(Settings::new);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File directory;
+    private final List<CheckpointPair> completedPairs;
+    private final Set<Map.Entry<String, String>> completedPairKeys = new HashSet<>();
+    private final List<FullMethodsPathData> completedRecords;
+    private BufferedWriter pairs;
+    private BufferedWriter records;
+    private long lastFlush = System.nanoTime();
+
+    private Checkpoint(File directory, List<CheckpointPair> completedPairs,
+                       List<FullMethodsPathData> completedRecords) {
+        this.directory = directory;
+        this.completedPairs = completedPairs;
+        this.completedRecords = completedRecords;
+        for (CheckpointPair pair : completedPairs) {
+            completedPairKeys.add(Map.entry(pair.directCaller(), pair.thirdPartyMethod()));
+        }
+    }
+
+    /**
+     * Write checkpoints, and resume from the existing checkpoint if there is one.
+     */
+    static void configure(boolean checkpoint, boolean resumeRun) {
+        Settings current = settings.get();
+        current.enabled = checkpoint || resumeRun;
+        current.resume = resumeRun;
+    }
+
+    /**
+     * Open the checkpoint of an analysis run, if checkpoints are enabled. Without resuming, the existing checkpoint
+     * is discarded.
+     */
+    static void start(String pathToJar, String packageName, Path packageMapPath, String sourceRootPath,
+                      List<File> jacocoHtmlDirs, String reportPath) {
+        finish();
+        Settings current = settings.get();
+        if (!current.enabled) {
+            return;
+        }
+        File directory = PathWriter.resolveSibling(reportPath, "checkpoint");
+        CheckpointState state = state(pathToJar, packageName, packageMapPath, sourceRootPath, jacocoHtmlDirs);
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            Files.createDirectories(directory.toPath());
+            File stateFile = new File(directory, STATE_FILE);
+            List<CheckpointPair> pairs = List.of();
+            List<FullMethodsPathData> records = List.of();
+            if (current.resume && stateFile.exists()) {
+                CheckpointState saved = mapper.readValue(stateFile, CheckpointState.class);
+                if (state.samePaths(saved)) {
+                    pairs = readLog(mapper, new File(directory, PAIRS_FILE), CheckpointPair.class);
+                    if (Objects.equals(state.sourceRootPath(), saved.sourceRootPath())) {
+                        records = completedRecords(readLog(mapper, new File(directory, RECORDS_FILE),
+                                CheckpointRecord.class));
+                    } else {
+                        log.warn("The checkpoint in {} was extracted from other sources, extracting the paths again",
+                                directory);
+                    }
+                    log.info("Resuming from {}: {} completed pairs and {} extracted paths", directory, pairs.size(),
+                            records.size());
+                } else {
+                    log.warn("The checkpoint in {} belongs to another jar, package, package map or coverage, " +
+                            "starting from scratch", directory);
+                }
+            }
+            // The logs are rewritten without the lines that were cut off
+            mapper.writeValue(stateFile, state);
+            Checkpoint checkpoint = new Checkpoint(directory, new ArrayList<>(pairs), new ArrayList<>(records));
+            checkpoint.pairs = checkpoint.rewrite(PAIRS_FILE, pairs);
+            List<CheckpointRecord> recordLines = new ArrayList<>();
+            for (int i = 0; i < records.size(); i++) {
+                recordLines.add(new CheckpointRecord(i, records.get(i)));
+            }
+            checkpoint.records = checkpoint.rewrite(RECORDS_FILE, recordLines);
+            current.checkpoint = checkpoint;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the checkpoint in " + directory, e);
+        }
+    }
+
+    private static CheckpointState state(String pathToJar, String packageName, Path packageMapPath,
+                                         String sourceRootPath, List<File> jacocoHtmlDirs) {
+        File jar = new File(pathToJar);
+        File packageMap = packageMapPath == null ? null : packageMapPath.toFile();
+        return new CheckpointState(jar.getAbsolutePath(), jar.length(), jar.lastModified(), packageName,
+                packageMap == null ? null : packageMap.getAbsolutePath(),
+                packageMap == null ? 0 : packageMap.length(),
+                packageMap == null ? 0 : packageMap.lastModified(),
+                jacocoHtmlDirs.stream().map(File::getAbsolutePath).toList(),
+                sourceRootPath == null ? null : new File(sourceRootPath).getAbsolutePath());
+    }
+
+    /**
+     * The checkpoint of the current run, or null if checkpoints are disabled.
+     */
+    static Checkpoint current() {
+        return settings.get().checkpoint;
+    }
+
+    /**
+     * Flush and close the checkpoint of the current run. The checkpoint stays on disk.
+     */
+    static void finish() {
+        Settings current = settings.get();
+        if (current.checkpoint == null) {
+            return;
+        }
+        try {
+            current.checkpoint.close();
+        } catch (IOException e) {
+            log.error("Failed to close the checkpoint in {}", current.checkpoint.directory, e);
+        }
+        current.checkpoint = null;
+    }
+
+    /**
+     * Hand the paths and path statistics of the completed pairs to the path search, in the order they were found.
+     */
+    void replayPairs(Consumer<List<MethodSignature>> pathFound, List<PathStats> allPathStats) {
+        JavaIdentifierFactory factory = JavaIdentifierFactory.getInstance();
+        for (CheckpointPair pair : completedPairs) {
+            for (List<String> path : pair.paths()) {
+                pathFound.accept(path.stream().map(factory::parseMethodSignature).toList());
+                Metrics.increment("paths");
+            }
+            allPathStats.addAll(pair.stats());
+        }
+        Metrics.add("checkpoint.resumedPairs", completedPairs.size());
+    }
+
+    boolean isPairDone(MethodSignature directCaller, MethodSignature thirdPartyMethod) {
+        return completedPairKeys.contains(Map.entry(directCaller.toString(), thirdPartyMethod.toString()));
+    }
+
+    void pairDone(MethodSignature directCaller, MethodSignature thirdPartyMethod, List<List<MethodSignature>> paths,
+                  List<PathStats> stats) {
+        List<List<String>> pathNames = paths.stream()
+                .map(path -> path.stream().map(MethodSignature::toString).toList())
+                .toList();
+        CheckpointPair pair = new CheckpointPair(directCaller.toString(), thirdPartyMethod.toString(), pathNames,
+                List.copyOf(stats));
+        completedPairs.add(pair);
+        completedPairKeys.add(Map.entry(pair.directCaller(), pair.thirdPartyMethod()));
+        append(pairs, pair);
+    }
+
+    /**
+     * The records extracted before, by the index of their path. Null for the skipped paths.
+     */
+    List<FullMethodsPathData> completedRecords() {
+        return Collections.unmodifiableList(completedRecords);
+    }
+
+    void recordDone(int path, FullMethodsPathData record) {
+        if (path != completedRecords.size()) {
+            throw new IllegalStateException("Path " + path + " is extracted out of order, expected path "
+                    + completedRecords.size());
+        }
+        completedRecords.add(record);
+        append(records, new CheckpointRecord(path, record));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        pairs.close();
+        records.close();
+    }
+
+    private synchronized void append(BufferedWriter writer, Object line) {
+        try {
+            writer.write(mapper.writeValueAsString(line));
+            writer.newLine();
+            if (System.nanoTime() - lastFlush > FLUSH_INTERVAL_NANOS) {
+                pairs.flush();
+                records.flush();
+                lastFlush = System.nanoTime();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the checkpoint in " + directory, e);
+        }
+    }
+
+    private BufferedWriter rewrite(String fileName, List<?> lines) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(new File(directory, fileName).toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        for (Object line : lines) {
+            writer.write(mapper.writeValueAsString(line));
+            writer.newLine();
+        }
+        writer.flush();
+        return writer;
+    }
+
+    /**
+     * Read the complete lines of a log, up to the first line that cannot be read.
+     */
+    private static <T> List<T> readLog(ObjectMapper mapper, File file, Class<T> type) throws IOException {
+        List<T> lines = new ArrayList<>();
+        if (!file.exists()) {
+            return lines;
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            try {
+                lines.add(mapper.readValue(line, type));
+            } catch (IOException e) {
+                log.warn("Ignoring the checkpoint from line {} of {} on, it was cut off", lines.size() + 1, file);
+                break;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The records of the paths 0, 1, 2... up to the first missing one.
+     */
+    private static List<FullMethodsPathData> completedRecords(List<CheckpointRecord> lines) {
+        List<FullMethodsPathData> records = new ArrayList<>();
+        for (CheckpointRecord line : lines) {
+            if (line.path() != records.size()) {
+                break;
+            }
+            records.add(line.record());
+        }
+        return records;
+    }
+
+    /**
+     * Whether a session writes checkpoints, and the checkpoint of its current run.
+     */
+    private static final class Settings {
+        boolean enabled;
+        boolean resume;
+        Checkpoint checkpoint;
+    }
+}
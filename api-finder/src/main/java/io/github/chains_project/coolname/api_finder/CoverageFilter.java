@@ -1,6 +1,12 @@
 package io.github.chains_project.coolname.api_finder;
 
+import io.github.chains_project.coolname.api_finder.model.MethodId;
+import io.github.chains_project.coolname.api_finder.utils.BoundedCache;
+import io.github.chains_project.coolname.api_finder.utils.CacheStats;
 import io.github.chains_project.coolname.api_finder.utils.CoverageLogger;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -8,32 +14,141 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.core.signatures.MethodSignature;
-import sootup.core.types.Type;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 public class CoverageFilter {
 
     private static final Logger log = LoggerFactory.getLogger(CoverageFilter.class);
+    private static final String REPORT_SUFFIX = ".java.html";
+    // Parsing is mostly waiting for the disk, so there are more threads than cores
+    private static final int PARSER_THREADS = Math.min(16, 4 * Runtime.getRuntime().availableProcessors());
     // Cache - Map<htmlFilePath, Map<thirdPartyMethod, isCovered>>
-    private static final Map<String, Map<String, Boolean>> coverageCache = new ConcurrentHashMap<>();
-    // Cache for parsed HTML documents: Map<htmlFilePath, Set<coveredMethods>>
-    private static final Map<String, Set<String>> parsedHtmlCache = new ConcurrentHashMap<>();
+    private static final SessionLocal<Map<String, Map<String, Boolean>>> coverageCache =
+            SessionLocal.withInitial(ConcurrentHashMap::new);
+    // Cache for parsed HTML documents: htmlFilePath -> covered lines, weighed by the number of lines
+    private static final SessionLocal<BoundedCache<String, Set<String>>> parsedHtmlCache = SessionLocal.withInitial(
+            () -> BoundedCache.byWeight("coverageHtml", 2_000_000, (path, lines) -> lines.size()));
+    // The covered lines of all the reports of the current report directories, see buildIndex
+    private static final SessionLocal<AtomicReference<CoverageIndex>> coverageIndex =
+            SessionLocal.withInitial(AtomicReference::new);
 
     /**
      * Clears the coverage cache. Call this if you want to force re-parsing of HTML files.
      */
     public static void clearCache() {
-        coverageCache.clear();
-        parsedHtmlCache.clear();
+        coverageCache.get().clear();
+        parsedHtmlCache.get().clear();
+        // The reports are parsed lazily again without the index
+        coverageIndex.get().set(null);
         log.debug("Coverage cache cleared");
     }
 
+    /**
+     * Get cache statistics for monitoring/debugging.
+     */
+    public static CacheStats getCacheStats() {
+        return parsedHtmlCache.get().stats();
+    }
+
+    /**
+     * Walk the report directories once and parse all the class reports in parallel into an index of their covered
+     * lines, so that the coverage checks of the pair discovery are lookups in memory instead of a file system access
+     * per pair and report directory. Nothing is done if the index of the same directories is already built.
+     * <p>
+     * The index holds the covered lines of every report, it is not bounded like the cache of the lazily parsed
+     * reports. It is dropped with the other caches when the heap runs full, the reports are then parsed lazily again.
+     */
+    public static void buildIndex(List<File> jacocoHtmlDirs) {
+        AtomicReference<CoverageIndex> current = coverageIndex.get();
+        CoverageIndex built = current.get();
+        if (built != null && built.dirs().equals(jacocoHtmlDirs)) {
+            return;
+        }
+        // The reports by their path relative to the report directory, in the order of the directories
+        Map<String, List<File>> reports = new HashMap<>();
+        List<File> allReports = new ArrayList<>();
+        for (File dir : jacocoHtmlDirs) {
+            Path root = dir.toPath();
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(file -> file.getFileName().toString().endsWith(REPORT_SUFFIX) && Files.isRegularFile(file))
+                        .forEach(file -> {
+                            String reportFile = root.relativize(file).toString().replace(File.separatorChar, '/');
+                            reports.computeIfAbsent(reportFile, k -> new ArrayList<>()).add(file.toFile());
+                            allReports.add(file.toFile());
+                        });
+            } catch (IOException e) {
+                log.error("Failed to list the coverage reports in {}", dir, e);
+            }
+        }
+        Map<File, Set<String>> coveredLines = parseInParallel(allReports);
+        Map<String, List<CoveredReport>> index = new HashMap<>();
+        reports.forEach((reportFile, files) -> index.put(reportFile, files.stream()
+                .filter(coveredLines::containsKey)
+                .map(file -> new CoveredReport(file.getAbsolutePath(), coveredLines.get(file)))
+                .toList()));
+        current.set(new CoverageIndex(List.copyOf(jacocoHtmlDirs), Map.copyOf(index)));
+        Metrics.add("coverage.indexedReports", coveredLines.size());
+        log.info("Indexed the covered lines of {} coverage reports", coveredLines.size());
+    }
+
+    /**
+     * The covered lines of each report. A report that cannot be parsed is left out.
+     */
+    private static Map<File, Set<String>> parseInParallel(List<File> reports) {
+        Map<File, Set<String>> coveredLines = new ConcurrentHashMap<>();
+        if (reports.isEmpty()) {
+            return coveredLines;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARSER_THREADS, reports.size()), runnable -> {
+            Thread thread = new Thread(runnable, "coverage-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> parsed = new ArrayList<>();
+            for (File report : reports) {
+                parsed.add(executor.submit(PhaseRecorder.worker(
+                        () -> coveredLines.put(report, Set.copyOf(parseCoveredLines(report))))));
+            }
+            for (int i = 0; i < parsed.size(); i++) {
+                try {
+                    parsed.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("Failed to parse the coverage report {}", reports.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the coverage reports", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return coveredLines;
+    }
+
     /**
      * Checks if a given method is covered by tests using JaCoCo HTML reports.
      *
@@ -45,37 +160,32 @@ public class CoverageFilter {
     public static boolean isAlreadyCoveredByTests(MethodSignature method, MethodSignature target,
                                                   List<File> jacocoHtmlDirs) {
         try {
-            // Extract class and method information from the method signature
-            String fullClassName = method.getDeclClassType().getFullyQualifiedName();
-            String simpleClassName = fullClassName.substring(fullClassName.lastIndexOf('.') + 1);
-            String packageName = fullClassName.substring(0, fullClassName.lastIndexOf('.'));
-            String thirdPartyMethod = target.getDeclClassType().getFullyQualifiedName() + "."
-                    + target.getName();
-            String thirdPartyMethodFull = target.getDeclClassType().getFullyQualifiedName()
-                    + "." + target.getName()
-                    + "(" + target.getParameterTypes().stream()
-                    .map(Type::toString)
-                    .collect(Collectors.joining(", ")) + ")";
+            // The report file and the names are computed once per method, see MethodId
+            String reportFile = MethodId.of(method).jacocoReportFile();
+            if (reportFile == null) {
+                // Classes in the default package have no report folder
+                return false;
+            }
+            MethodId targetId = MethodId.of(target);
+            String thirdPartyMethod = targetId.jacocoName();
+            String thirdPartyMethodFull = targetId.jacocoNameWithParameters();
             // Search through all JaCoCo report directories
-            for (File dir : jacocoHtmlDirs) {
-                File htmlFile = dir.toPath()
-                        .resolve(packageName)
-                        .resolve(simpleClassName + ".java.html")
-                        .toFile();
-                if (!htmlFile.exists()) {
-                    continue;
-                }
-                String htmlFilePath = htmlFile.getAbsolutePath();
+            for (CoveredReport report : reportsOf(reportFile, jacocoHtmlDirs)) {
+                String htmlFilePath = report.path();
                 // Check cache first
-                Map<String, Boolean> fileCache = coverageCache.get(htmlFilePath);
+                Map<String, Boolean> fileCache = coverageCache.get().get(htmlFilePath);
                 if (fileCache != null && fileCache.containsKey(thirdPartyMethod)) {
                     log.debug("Cache hit for {} in {}", thirdPartyMethod, htmlFilePath);
+                    Metrics.cacheHit("coverage");
                     return fileCache.get(thirdPartyMethod);
                 }
+                Metrics.cacheMiss("coverage");
                 // Not in cache, need to check
-                boolean isCovered = isMethodCovered(htmlFile, thirdPartyMethod);
+                boolean isCovered = report.coveredLines() != null
+                        ? isMethodCovered(report.coveredLines(), thirdPartyMethod)
+                        : isMethodCovered(new File(htmlFilePath), thirdPartyMethod);
                 // Store in cache
-                coverageCache.computeIfAbsent(htmlFilePath, k -> new ConcurrentHashMap<>())
+                coverageCache.get().computeIfAbsent(htmlFilePath, k -> new ConcurrentHashMap<>())
                         .put(thirdPartyMethod, isCovered);
                 if (isCovered) {
                     CoverageLogger.logCoverage(thirdPartyMethodFull, true);
@@ -90,6 +200,25 @@ public class CoverageFilter {
         }
     }
 
+    /**
+     * The reports of a class in the given report directories, from the index if it is built for them. Without the
+     * index, the reports are looked up on disk and their covered lines are parsed on demand.
+     */
+    private static List<CoveredReport> reportsOf(String reportFile, List<File> jacocoHtmlDirs) {
+        CoverageIndex index = coverageIndex.get().get();
+        if (index != null && index.dirs().equals(jacocoHtmlDirs)) {
+            return index.reports().getOrDefault(reportFile, List.of());
+        }
+        List<CoveredReport> reports = new ArrayList<>();
+        for (File dir : jacocoHtmlDirs) {
+            File htmlFile = dir.toPath().resolve(reportFile).toFile();
+            if (htmlFile.exists()) {
+                reports.add(new CoveredReport(htmlFile.getAbsolutePath(), null));
+            }
+        }
+        return reports;
+    }
+
     /**
      * Parses the JaCoCo HTML report to determine if a method is covered.
      *
@@ -98,32 +227,22 @@ public class CoverageFilter {
      * @return true if the method is covered (fully or partially), false otherwise
      * @throws Exception if parsing fails
      */
-    private static boolean isMethodCovered(File htmlFile, String thirdPartyMethod) throws Exception {
-        String htmlFilePath = htmlFile.getAbsolutePath();
+    static boolean isMethodCovered(File htmlFile, String thirdPartyMethod) throws Exception {
         // Check if we've already parsed this HTML file
-        Set<String> coveredMethods = parsedHtmlCache.get(htmlFilePath);
-        if (coveredMethods == null) {
-            // Parse the HTML file and extract all covered methods
-            coveredMethods = ConcurrentHashMap.newKeySet();
-            Document doc = Jsoup.parse(htmlFile);
-            Elements spans = doc.select("span[id^=L]");
-            /* We parse the HTML file using Jsoup. The way to identify covered method is to check the span class.
-             * It is either "fc" (fully covered) or "fc bfc" (partially covered), or "nc" (not covered).
-             * Then, we also have to consider <init> (constructors) and <clinit> (static initializers). They won't appear
-             * with <init> or <clinit> in the class html file. */
-            for (Element span : spans) {
-                String codeLine = span.text();
-                String clazz = span.className();
-                // Only process covered lines
-                if (clazz.contains("fc")) {
-                    // Store the entire covered line for later pattern matching
-                    coveredMethods.add(codeLine);
-                }
-            }
-            // Cache the parsed results
-            parsedHtmlCache.put(htmlFilePath, coveredMethods);
-            log.debug("Cached {} covered method calls from {}", coveredMethods.size(), htmlFilePath);
+        Set<String> coveredMethods;
+        try {
+            coveredMethods = parsedHtmlCache.get().get(htmlFile.getAbsolutePath(),
+                    path -> parseCoveredLines(htmlFile));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        return isMethodCovered(coveredMethods, thirdPartyMethod);
+    }
+
+    /**
+     * Whether a call of the third-party method is on one of the covered lines.
+     */
+    private static boolean isMethodCovered(Set<String> coveredMethods, String thirdPartyMethod) {
         // Now check if our specific third-party method is in the covered set
         String className = thirdPartyMethod.substring(0, thirdPartyMethod.lastIndexOf('.'));
         String shortClassName = className.substring(className.lastIndexOf('.') + 1);
@@ -152,4 +271,45 @@ public class CoverageFilter {
         }
         return false;
     }
+
+    /**
+     * Parse the HTML file and extract all covered lines.
+     */
+    private static Set<String> parseCoveredLines(File htmlFile) {
+        Set<String> coveredMethods = new HashSet<>();
+        Document doc;
+        try {
+            doc = Jsoup.parse(htmlFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Elements spans = doc.select("span[id^=L]");
+        /* We parse the HTML file using Jsoup. The way to identify covered method is to check the span class.
+         * It is either "fc" (fully covered) or "fc bfc" (partially covered), or "nc" (not covered).
+         * Then, we also have to consider <init> (constructors) and <clinit> (static initializers). They won't appear
+         * with <init> or <clinit> in the class html file. */
+        for (Element span : spans) {
+            String codeLine = span.text();
+            String clazz = span.className();
+            // Only process covered lines
+            if (clazz.contains("fc")) {
+                // Store the entire covered line for later pattern matching
+                coveredMethods.add(codeLine);
+            }
+        }
+        log.debug("Cached {} covered method calls from {}", coveredMethods.size(), htmlFile.getAbsolutePath());
+        return coveredMethods;
+    }
+
+    /**
+     * The reports of the classes in some report directories, by their path relative to the directory.
+     */
+    private record CoverageIndex(List<File> dirs, Map<String, List<CoveredReport>> reports) {
+    }
+
+    /**
+     * A report and its covered lines, null if they are not parsed yet.
+     */
+    private record CoveredReport(String path, Set<String> coveredLines) {
+    }
 }
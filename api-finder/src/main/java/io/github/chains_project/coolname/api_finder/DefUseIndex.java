@@ -0,0 +1,158 @@
+package io.github.chains_project.coolname.api_finder;
+
+import spoon.reflect.code.*;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.reference.CtVariableReference;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+import java.util.*;
+
+/**
+ * The def-use and control statements of the top-level statements of a method body, as needed by the backward slice
+ * in {@link MethodSlicer}. It is built once per method, every slice of the method then only walks int arrays instead of
+ * collecting the variable accesses of the statements again for every element of the worklist.
+ * <p>
+ * Spoon compares statements and variable references structurally, so two equal statements (e.g. the same log call
+ * twice) are one statement for the slice. The index keeps these semantics: equal statements share a class id, and a
+ * statement is found at the position of the last equal statement.
+ */
+final class DefUseIndex {
+
+    private static final int NONE = -1;
+
+    private final List<CtStatement> statements;
+    // Statement -> class id, equal statements share the id of the first one
+    private final Map<CtStatement, Integer> classIds = new HashMap<>();
+    private final int[] classOf;
+    // Class id -> position of the last statement of the class
+    private final int[] lastPosition;
+    // Only variables that are defined by some statement can make a statement relevant
+    private final Map<CtVariableReference<?>, Integer> variableIds = new HashMap<>();
+    private final int[] definedVariable;
+    private final int[][] usedVariables;
+    private final boolean[] control;
+
+    DefUseIndex(CtExecutable<?> executable) {
+        statements = executable.getBody().getStatements();
+        int size = statements.size();
+        classOf = new int[size];
+        int[] last = new int[size];
+        for (int i = 0; i < size; i++) {
+            int classId = classIds.computeIfAbsent(statements.get(i), k -> classIds.size());
+            classOf[i] = classId;
+            last[classId] = i;
+        }
+        lastPosition = Arrays.copyOf(last, classIds.size());
+        definedVariable = new int[size];
+        for (int i = 0; i < size; i++) {
+            CtVariableReference<?> defined = definedVariable(statements.get(i));
+            definedVariable[i] = defined == null ? NONE
+                    : variableIds.computeIfAbsent(defined, k -> variableIds.size());
+        }
+        usedVariables = new int[size][];
+        control = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            CtStatement statement = statements.get(i);
+            control[i] = statement instanceof CtIf || statement instanceof CtLoop || statement instanceof CtSwitch;
+            usedVariables[i] = variableIds(usedElement(statement));
+        }
+    }
+
+    /**
+     * The number of top-level statements of the method, the weight of the index in the cache.
+     */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Compute the backward slice from a target invocation, see {@link MethodSlicer#computeBackwardSlice}.
+     */
+    Set<CtStatement> backwardSlice(CtElement targetElement, CtStatement targetStmt) {
+        Set<CtStatement> slice = new LinkedHashSet<>();
+        slice.add(targetStmt);
+        BitSet inSlice = new BitSet(lastPosition.length);
+        Integer targetClass = classIds.get(targetStmt);
+        if (targetClass == null) {
+            // Not a top-level statement of the body, there is nothing to slice
+            return slice;
+        }
+        inSlice.set(targetClass);
+        BitSet relevantVariables = new BitSet(variableIds.size());
+        for (int variable : variableIds(targetElement)) {
+            relevantVariables.set(variable);
+        }
+        BitSet visited = new BitSet(lastPosition.length);
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.add(targetClass);
+        while (!worklist.isEmpty()) {
+            int currentClass = worklist.poll();
+            if (visited.get(currentClass)) {
+                continue;
+            }
+            visited.set(currentClass);
+            // Look at all statements before the current one
+            for (int i = lastPosition[currentClass] - 1; i >= 0; i--) {
+                if (inSlice.get(classOf[i])) {
+                    continue;
+                }
+                boolean isRelevant = control[i]
+                        || definedVariable[i] != NONE && relevantVariables.get(definedVariable[i]);
+                if (isRelevant) {
+                    for (int variable : usedVariables[i]) {
+                        relevantVariables.set(variable);
+                    }
+                    inSlice.set(classOf[i]);
+                    slice.add(statements.get(i));
+                    worklist.add(classOf[i]);
+                }
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * The variable a statement defines: the assigned variable of an assignment or the declared local variable.
+     */
+    private static CtVariableReference<?> definedVariable(CtStatement statement) {
+        if (statement instanceof CtAssignment<?, ?> assignment
+                && assignment.getAssigned() instanceof CtVariableAccess<?> varAccess) {
+            return varAccess.getVariable();
+        }
+        if (statement instanceof CtLocalVariable<?> varDecl) {
+            return varDecl.getReference();
+        }
+        return null;
+    }
+
+    /**
+     * The element whose variables become relevant once the statement is in the slice: the right-hand side of an
+     * assignment, the initialization of a local variable, or the whole control statement.
+     */
+    private static CtElement usedElement(CtStatement statement) {
+        if (statement instanceof CtAssignment<?, ?> assignment) {
+            return assignment.getAssignment();
+        }
+        if (statement instanceof CtLocalVariable<?> varDecl) {
+            return varDecl.getDefaultExpression();
+        }
+        if (statement instanceof CtIf || statement instanceof CtLoop || statement instanceof CtSwitch) {
+            return statement;
+        }
+        return null;
+    }
+
+    private int[] variableIds(CtElement element) {
+        if (element == null) {
+            return new int[0];
+        }
+        List<CtVariableAccess<?>> accesses = element.getElements(new TypeFilter<>(CtVariableAccess.class));
+        return accesses.stream()
+                .map(access -> variableIds.get(access.getVariable()))
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .toArray();
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.chains_project.coolname.api_finder.model.ClassMemberData;
+import io.github.chains_project.coolname.api_finder.model.DictionaryPathData;
+import io.github.chains_project.coolname.api_finder.model.DictionaryReport;
+import io.github.chains_project.coolname.api_finder.model.FullMethodsPathData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the full methods report with every method body, class member block and import list stored once. In the
+ * usual report, each path repeats the sources of all its methods and the constructors, setters, getters and imports of
+ * its entry point class, so the same strings are written (and parsed) again and again.
+ * <p>
+ * The records are interned as they come and only the small path records are kept until the writer is closed, then
+ * the tables and the paths are written together. The tables come first, so a streaming reader has them before the
+ * first path.
+ */
+class DictionaryPathWriter implements PathWriter.RecordWriter {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File outputFile;
+    private final Table<String> methodSources = new Table<>();
+    private final Table<ClassMemberData> classMembers = new Table<>();
+    private final Table<List<String>> imports = new Table<>();
+    private final List<DictionaryPathData> paths = new ArrayList<>();
+
+    DictionaryPathWriter(File reportFile) {
+        this.outputFile = dictionaryFile(reportFile);
+    }
+
+    @Override
+    public void write(FullMethodsPathData data) {
+        int[] sources = new int[data.methodSources().size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = methodSources.idOf(data.methodSources().get(i));
+        }
+        int members = classMembers.idOf(new ClassMemberData(data.constructors(), data.setters(), data.getters()));
+        paths.add(new DictionaryPathData(data.entryPoint(), data.thirdPartyMethod(), data.path(), sources, members,
+                imports.idOf(data.imports()), data.testTemplate(), data.conditionCount()));
+    }
+
+    @Override
+    public int written() {
+        return paths.size();
+    }
+
+    /**
+     * Nothing to flush, the report is only written on close.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Not indented, one id per line would take more room than the ids themselves
+        mapper.writeValue(outputFile, new DictionaryReport(methodSources.values, classMembers.values, imports.values,
+                paths));
+    }
+
+    static File dictionaryFile(File reportFile) {
+        return new File(reportFile.getPath().replace(".json", ".dictionary.json"));
+    }
+
+    /**
+     * The distinct values in the order they were first seen, the id of a value is its index.
+     */
+    private static class Table<T> {
+
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int idOf(T value) {
+            return ids.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+}
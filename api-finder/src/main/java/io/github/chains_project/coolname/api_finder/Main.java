@@ -1,11 +1,19 @@
 package io.github.chains_project.coolname.api_finder;
 
+import io.github.chains_project.coolname.api_finder.model.ReachabilityIndex;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.SearchBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
+import java.io.File;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class Main {
 
@@ -16,7 +24,7 @@ public class Main {
         System.exit(exitCode);
     }
 
-    @CommandLine.Command(subcommands = {Processor.class}, mixinStandardHelpOptions = true, version = "0.1")
+    @CommandLine.Command(subcommands = {Processor.class, Batch.class, Serve.class, Perf.class, Reachability.class}, mixinStandardHelpOptions = true, version = "0.1")
     public static class CLIEntryPoint implements Runnable {
         @Override
         public void run() {
@@ -77,14 +85,446 @@ public class Main {
         )
         List<Path> jacocoFiles;
 
+        @CommandLine.Option(
+                names = {"--heap-budget"},
+                paramLabel = "SIZE",
+                description = "The heap the analysis may retain, e.g. 4g. When the heap gets close to it, the caches " +
+                        "are dropped, path statistics are no longer collected and the report is streamed to disk."
+        )
+        String heapBudget;
+
+        @CommandLine.Mixin
+        AnalysisOptions analysisOptions;
+
         @Override
         public void run() {
+            ApiFinder.Builder builder = analysisOptions.builder();
+            if (heapBudget != null) {
+                builder.heapBudget(HeapBudget.parseSize(heapBudget));
+            }
+            ApiFinder finder = builder.build();
             if (sourceCodePath == null) {
                 log.warn("No source code path provided, skipping source code extraction.");
-                MethodExtractor.process(jarPath, reportFile, packageName, packageMapPath);
+                finder.process(jarPath, reportFile, packageName, packageMapPath);
             }
-            MethodExtractor.process(jarPath, reportFile, packageName, packageMapPath, sourceCodePath,
+            finder.process(jarPath, reportFile, packageName, packageMapPath, sourceCodePath,
                     jacocoFiles.stream().map(Path::toFile).toList());
         }
     }
+
+    @CommandLine.Command(name = "batch", mixinStandardHelpOptions = true, version = "0.1",
+            description = "Process all projects listed in a manifest file within a single JVM.")
+    private static class Batch implements Callable<Integer> {
+        @CommandLine.Option(
+                names = {"-f", "--manifest"},
+                paramLabel = "MANIFEST",
+                description = "The path to the JSON manifest. It contains a \"projects\" list, where each entry has " +
+                        "the fields name, jarPath, packageName, packageMap, sourceCodePath, jacocoFiles and " +
+                        "optionally reportPrefix.",
+                required = true
+        )
+        Path manifestPath;
+
+        @CommandLine.Option(
+                names = {"-o", "--output-dir"},
+                paramLabel = "OUTPUT-DIR",
+                description = "The folder where the reports of each project are written to, in a sub folder named " +
+                        "after the project. Ignored for projects that define their own reportPrefix.",
+                defaultValue = "."
+        )
+        Path outputDir;
+
+        @CommandLine.Option(
+                names = {"--threads"},
+                paramLabel = "THREADS",
+                description = "The number of projects analyzed at the same time, each in its own session. " +
+                        "Default: ${DEFAULT-VALUE}.",
+                defaultValue = "1"
+        )
+        int threads;
+
+        @CommandLine.Mixin
+        AnalysisOptions analysisOptions;
+
+        @Override
+        public Integer call() throws Exception {
+            if (threads < 1) {
+                throw new CommandLine.ParameterException(new CommandLine(this), "At least one thread is needed");
+            }
+            int failed = BatchRunner.run(manifestPath, outputDir, analysisOptions.builder(), threads);
+            return failed == 0 ? 0 : 1;
+        }
+    }
+
+    @CommandLine.Command(name = "serve", mixinStandardHelpOptions = true, version = "0.1",
+            description = "Load a project once and answer JSON-RPC queries about it over stdin/stdout or a local " +
+                    "socket.")
+    private static class Serve implements Callable<Integer> {
+        @CommandLine.Option(
+                names = {"-j", "--jar-path"},
+                paramLabel = "JAR-PATH",
+                description = "The path to the JAR file to analyze",
+                required = true
+        )
+        String jarPath;
+
+        @CommandLine.Option(
+                names = {"-p", "--package-name"},
+                paramLabel = "PACKAGE-NAME",
+                description = "The package name of the project under consideration to filter them as not third-party " +
+                        "APIs.",
+                required = true
+        )
+        String packageName;
+
+        @CommandLine.Option(
+                names = {"-m", "--package-map"},
+                paramLabel = "PACKAGE-MAP",
+                description = "The path to the package map file. " +
+                        "This file contains the mapping of package names to Maven coordinates.",
+                required = true
+        )
+        Path packageMapPath;
+
+        @CommandLine.Option(
+                names = {"-s", "--source-code-path"},
+                paramLabel = "SOURCE-CODE-PATH",
+                description = "The path to the source code root directory of the project under consideration. " +
+                        "Required for source, slice and condition queries."
+        )
+        String sourceCodePath;
+
+        @CommandLine.Option(
+                names = {"-c", "--jacoco-files"},
+                paramLabel = "JACOCO-FILES",
+                description = "One or more JaCoCo report directories",
+                arity = "0..*"
+        )
+        List<Path> jacocoFiles = List.of();
+
+        @CommandLine.Option(
+                names = {"--port"},
+                paramLabel = "PORT",
+                description = "Listen on this port of the loopback interface instead of using stdin/stdout."
+        )
+        Integer port;
+
+        @Override
+        public Integer call() throws Exception {
+            AnalysisServer server = AnalysisServer.load(jarPath, packageName, packageMapPath, sourceCodePath,
+                    jacocoFiles.stream().map(Path::toFile).toList());
+            if (port != null) {
+                server.serve(port);
+            } else {
+                server.serve(System.in, System.out);
+            }
+            return 0;
+        }
+    }
+
+    @CommandLine.Command(name = "reachability", mixinStandardHelpOptions = true, version = "0.1",
+            description = "Answer reachability questions from an index written with --reachability-index, " +
+                    "without loading the project.")
+    private static class Reachability implements Callable<Integer> {
+        @CommandLine.Option(
+                names = {"-i", "--index"},
+                paramLabel = "INDEX",
+                description = "The reachability-index.json file",
+                required = true
+        )
+        File indexFile;
+
+        @CommandLine.Option(
+                names = {"--reaching"},
+                paramLabel = "METHOD",
+                description = "Print the entry points that reach this third-party method, or any third-party " +
+                        "method in this package or class, e.g. org.bouncycastle."
+        )
+        String reaching;
+
+        @CommandLine.Option(
+                names = {"--reached-by"},
+                paramLabel = "ENTRY-POINT",
+                description = "Print the third-party methods this entry point reaches."
+        )
+        String reachedBy;
+
+        @CommandLine.Option(
+                names = {"--count"},
+                description = "Print the number of results instead of the results."
+        )
+        boolean count;
+
+        @Override
+        public Integer call() throws Exception {
+            if (reaching != null && reachedBy != null) {
+                throw new CommandLine.ParameterException(new CommandLine(this),
+                        "--reaching and --reached-by cannot be combined");
+            }
+            ReachabilityIndex index = PathWriter.readReachabilityIndex(indexFile);
+            if (reaching == null && reachedBy == null) {
+                System.out.printf("%d entry points, %d third-party methods%n", index.entryPoints().size(),
+                        index.thirdPartyMethods().size());
+                return 0;
+            }
+            List<String> results = reaching != null
+                    ? index.entryPointsReaching(reaching)
+                    : index.thirdPartyMethodsReachedBy(reachedBy);
+            if (count) {
+                System.out.println(results.size());
+            } else {
+                results.forEach(System.out::println);
+            }
+            return 0;
+        }
+    }
+
+    @CommandLine.Command(name = "perf", mixinStandardHelpOptions = true, version = "0.1",
+            description = "Measure the phases of full runs over the projects of a manifest and compare them " +
+                    "against a baseline report.")
+    private static class Perf implements Callable<Integer> {
+        @CommandLine.Option(
+                names = {"-f", "--manifest"},
+                paramLabel = "MANIFEST",
+                description = "The path to the JSON manifest, in the same format as for the batch command.",
+                required = true
+        )
+        Path manifestPath;
+
+        @CommandLine.Option(
+                names = {"-o", "--output-dir"},
+                paramLabel = "OUTPUT-DIR",
+                description = "The folder where the analysis reports of each project are written to.",
+                defaultValue = "."
+        )
+        Path outputDir;
+
+        @CommandLine.Option(
+                names = {"-r", "--report"},
+                paramLabel = "REPORT",
+                description = "The path where the performance report is written to.",
+                defaultValue = "perf-report.json"
+        )
+        Path reportPath;
+
+        @CommandLine.Option(
+                names = {"-b", "--baseline"},
+                paramLabel = "BASELINE",
+                description = "A performance report of an earlier run. If given, the command fails when a phase " +
+                        "got slower or used more memory than allowed by the threshold."
+        )
+        Path baselinePath;
+
+        @CommandLine.Option(
+                names = {"-t", "--threshold"},
+                paramLabel = "PERCENT",
+                description = "The allowed growth of a metric in percent compared to the baseline.",
+                defaultValue = "10"
+        )
+        double threshold;
+
+        @CommandLine.Option(
+                names = {"--warmup"},
+                paramLabel = "RUNS",
+                description = "The number of unmeasured runs per project.",
+                defaultValue = "1"
+        )
+        int warmups;
+
+        @CommandLine.Option(
+                names = {"--repetitions"},
+                paramLabel = "RUNS",
+                description = "The number of measured runs per project. The median is reported.",
+                defaultValue = "3"
+        )
+        int repetitions;
+
+        @Override
+        public Integer call() throws Exception {
+            if (repetitions < 1) {
+                throw new CommandLine.ParameterException(new CommandLine(this), "At least one repetition is needed");
+            }
+            int problems = PerfHarness.run(manifestPath, outputDir, reportPath, baselinePath, threshold,
+                    warmups, repetitions);
+            return problems == 0 ? 0 : 1;
+        }
+    }
+
+    /**
+     * The limits and output size of an analysis run, shared by the commands that run the analysis.
+     */
+    static class AnalysisOptions {
+        @CommandLine.Option(
+                names = {"--cache-limit"},
+                paramLabel = "CACHE=SIZE",
+                description = "The limit of a cache, e.g. methodSource=32m. The source caches (methodSource, slice) " +
+                        "are limited in characters, coverageHtml in covered lines and the others (spoonType, " +
+                        "conditions) in entries. Can be repeated."
+        )
+        Map<String, String> cacheLimits = new LinkedHashMap<>();
+
+        @CommandLine.Option(
+                names = {"--max-visited-nodes"},
+                paramLabel = "NODES",
+                description = "The maximum number of nodes a single path search may visit. Pairs whose search " +
+                        "runs out are marked as truncated in the path stats."
+        )
+        long maxVisitedNodes;
+
+        @CommandLine.Option(
+                names = {"--max-pair-time"},
+                paramLabel = "DURATION",
+                description = "The maximum time spent on the path searches of one (public method, third-party " +
+                        "method) pair, e.g. 30s."
+        )
+        String maxPairTime;
+
+        @CommandLine.Option(
+                names = {"--deadline"},
+                paramLabel = "DURATION",
+                description = "The time after which the path search of a project stops, e.g. 2h. The remaining " +
+                        "pairs are skipped and the reports are written with the paths found so far."
+        )
+        String deadline;
+
+        @CommandLine.Option(
+                names = {"--top-k"},
+                paramLabel = "K",
+                description = "Only write the K simplest paths (fewest conditions, then shortest). The paths are " +
+                        "ranked before any source is extracted, so only the K written paths are extracted."
+        )
+        int topK;
+
+        @CommandLine.Option(
+                names = {"--shards"},
+                paramLabel = "N",
+                description = "Write the full methods report as N newline-delimited JSON shards with an index file, " +
+                        "instead of one JSON file."
+        )
+        int shards;
+
+        @CommandLine.Option(
+                names = {"--shard-by"},
+                paramLabel = "KEY",
+                description = "What the records are sharded by: ${COMPLETION-CANDIDATES}. Default: ${DEFAULT-VALUE}."
+        )
+        ShardedPathWriter.ShardBy shardBy = ShardedPathWriter.ShardBy.ENTRY_POINT;
+
+        @CommandLine.Option(
+                names = {"--format"},
+                paramLabel = "FORMAT",
+                description = "The layout of the full methods report: ${COMPLETION-CANDIDATES}. DICTIONARY writes " +
+                        "each method source, class member block and import list once, in tables the paths refer " +
+                        "to by id. Default: ${DEFAULT-VALUE}."
+        )
+        PathWriter.Format format = PathWriter.Format.FULL;
+
+        @CommandLine.Option(
+                names = {"--pipeline"},
+                description = "Search the paths, extract them and write the full methods report at the same time. " +
+                        "The first paths are written soon after the search starts, but the report is not sorted."
+        )
+        boolean pipeline;
+
+        @CommandLine.Option(
+                names = {"--checkpoint"},
+                description = "Save the progress of the analysis in a checkpoint folder next to the report, so " +
+                        "that an interrupted run can be resumed with --resume."
+        )
+        boolean checkpoint;
+
+        @CommandLine.Option(
+                names = {"--resume"},
+                description = "Continue from the checkpoint next to the report: the completed pairs are not " +
+                        "searched again and the extracted paths are not extracted again. Implies --checkpoint."
+        )
+        boolean resume;
+
+        @CommandLine.Option(
+                names = {"--low-memory"},
+                description = "Release the SootUp view and call graph once the paths are found, before the Spoon " +
+                        "model is built, and release the Spoon model once the reports are written. With --pipeline, " +
+                        "only the Spoon model is released."
+        )
+        boolean lowMemory;
+
+        @CommandLine.Option(
+                names = {"--reachability-index"},
+                description = "Also write reachability-index.json next to the report: which third-party methods " +
+                        "each entry point reaches, for the reachability command."
+        )
+        boolean reachabilityIndex;
+
+        @CommandLine.Option(
+                names = {"--sample"},
+                paramLabel = "K",
+                description = "Search the paths of K random (entry point, third-party method) pairs only, and write " +
+                        "the estimated totals of all pairs with their confidence intervals to sample-estimates.json."
+        )
+        int sample;
+
+        @CommandLine.Option(
+                names = {"--seed"},
+                paramLabel = "SEED",
+                description = "The seed of the --sample draw, the same seed draws the same pairs. " +
+                        "Default: ${DEFAULT-VALUE}."
+        )
+        long seed = 1;
+
+        @CommandLine.Option(
+                names = {"--progress-interval"},
+                paramLabel = "DURATION",
+                description = "How often the progress of the path search and of the extraction is logged, with the " +
+                        "items done and remaining, the items per second, the ETA and the heap in use, e.g. 30s. " +
+                        "0 turns it off. Default: 1m."
+        )
+        String progressInterval;
+
+        @CommandLine.Option(
+                names = {"--status-file"},
+                description = "Also write the progress to progress.json next to the report, replaced atomically at " +
+                        "every report, for schedulers to poll."
+        )
+        boolean statusFile;
+
+        /**
+         * The configuration of the analysis sessions of the command.
+         */
+        ApiFinder.Builder builder() {
+            if (shards > 0 && format != PathWriter.Format.FULL) {
+                throw new CommandLine.ParameterException(new CommandLine(this),
+                        "--shards writes the FULL format only");
+            }
+            if (pipeline && topK > 0) {
+                throw new CommandLine.ParameterException(new CommandLine(this),
+                        "--top-k needs all paths before it writes any, it cannot be pipelined");
+            }
+            if (sample < 0) {
+                throw new CommandLine.ParameterException(new CommandLine(this), "--sample cannot be negative");
+            }
+            if (sample > 0 && (pipeline || checkpoint || resume)) {
+                throw new CommandLine.ParameterException(new CommandLine(this),
+                        "--sample cannot be combined with --pipeline, --checkpoint or --resume");
+            }
+            ApiFinder.Builder builder = ApiFinder.builder()
+                    .pipelined(pipeline)
+                    .checkpoint(checkpoint)
+                    .resume(resume)
+                    .lowMemory(lowMemory)
+                    .reachabilityIndex(reachabilityIndex)
+                    .sample(sample, seed)
+                    .statusFile(statusFile)
+                    .topK(topK)
+                    .shards(shards, shardBy)
+                    .format(format)
+                    .maxVisitedNodes(maxVisitedNodes)
+                    .maxPairTime(Duration.ofMillis(maxPairTime == null ? 0 : SearchBudget.parseDuration(maxPairTime)))
+                    .deadline(Duration.ofMillis(deadline == null ? 0 : SearchBudget.parseDuration(deadline)));
+            if (progressInterval != null) {
+                builder.progressInterval(Duration.ofMillis(SearchBudget.parseDuration(progressInterval)));
+            }
+            cacheLimits.forEach((cache, size) -> builder.cacheLimit(cache, HeapBudget.parseSize(size)));
+            return builder;
+        }
+    }
 }
@@ -1,23 +1,35 @@
 package io.github.chains_project.coolname.api_finder;
 
 import io.github.chains_project.coolname.api_finder.model.AnalysisResult;
+import io.github.chains_project.coolname.api_finder.model.MethodId;
 import io.github.chains_project.coolname.api_finder.model.PathNode;
 import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.model.PathTree;
+import io.github.chains_project.coolname.api_finder.model.ReachabilityIndex;
+import io.github.chains_project.coolname.api_finder.model.SampleReport;
 import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import io.github.chains_project.coolname.api_finder.utils.CoverageLogger;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
 import io.github.chains_project.coolname.api_finder.utils.PackageMatcher;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import io.github.chains_project.coolname.api_finder.utils.Progress;
+import io.github.chains_project.coolname.api_finder.utils.SearchBudget;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
+import io.github.chains_project.coolname.api_finder.utils.SpoonMethodFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.callgraph.CallGraph;
 import sootup.callgraph.RapidTypeAnalysisAlgorithm;
-import sootup.core.inputlocation.AnalysisInputLocation;
 import sootup.core.model.SootMethod;
 import sootup.core.signatures.MethodSignature;
-import sootup.java.bytecode.frontend.inputlocation.JavaClassPathAnalysisInputLocation;
+import sootup.java.core.JavaSootClass;
 import sootup.java.core.views.JavaView;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static io.github.chains_project.coolname.api_finder.CoverageFilter.isAlreadyCoveredByTests;
@@ -26,7 +38,7 @@ import static io.github.chains_project.coolname.api_finder.PathWriter.writePathS
 public class MethodExtractor {
 
     static final Logger log = LoggerFactory.getLogger(MethodExtractor.class);
-    static Set<String> ignoredPrefixes;
+    private static final SessionLocal<Settings> settings = SessionLocal.withInitial(Settings::new);
 
     /**
      * This method processes the JAR file to extract third party API calls and their paths.
@@ -44,14 +56,53 @@ public class MethodExtractor {
         // Start reading the jar with sootup. Here we use all the public methods as the entry points.
         // That means we don't plan to do anything (generate tests etc) for private methods.
         // Don't want any more complications with reflections and all. What we are doing is complicated enough.
-        ignoredPrefixes = PackageMatcher.loadIgnoredPrefixes(packageName);
-        JavaView view = createJavaView(pathToJar);
-        Set<MethodSignature> entryPoints = detectEntryPoints(view, packageName);
-        log.info("Found " + entryPoints.size() + " public methods as entry points.");
-        AnalysisResult result = analyzeReachability(view, entryPoints, packageMapPath, jacocoHtmlDirs);
-        // Write the three different output files
-        PathWriter.writeAllFormats(result, reportPath, view, sourceRootPath);
+        loadIgnoredPrefixes(packageName);
+        Settings current = settings.get();
+        PhaseRecorder.reset();
+        Metrics.reset();
+        HeapBudget.reset();
+        SearchBudget.start();
+        Checkpoint.start(pathToJar, packageName, packageMapPath, sourceRootPath, jacocoHtmlDirs, reportPath);
+        // The Spoon model does not depend on the call graph, so it is built at the same time. Not in the low memory
+        // mode, which builds it after the view is released.
+        if (sourceRootPath != null && !current.lowMemory) {
+            SourceCodeExtractor.buildModelInBackground(sourceRootPath);
+        }
+        // The coverage log and the path stats are written next to the report, so that several projects can be
+        // analyzed from the same working directory.
+        CoverageLogger.setCoverageFile(PathWriter.resolveSibling(reportPath, "coverage.json"));
+        Progress.setStatusFile(PathWriter.resolveSibling(reportPath, "progress.json"));
+        if (current.lowMemory && !current.pipelined) {
+            // The view and the call graph are only referenced while the paths are searched, so they can be collected
+            // before the Spoon model is built for the reports
+            AnalysisResult result = analyzeReleasingView(pathToJar, packageName, packageMapPath, jacocoHtmlDirs,
+                    reportPath);
+            PhaseRecorder.record("reports", () -> PathWriter.writeAllFormats(result, reportPath, null,
+                    sourceRootPath, packageMapPath));
+        } else {
+            JavaView view = PhaseRecorder.record("view", () -> createJavaView(pathToJar, packageName));
+            Set<MethodSignature> entryPoints = findEntryPoints(view, packageName);
+            if (current.pipelined) {
+                if (current.lowMemory) {
+                    log.warn("The search and the extraction overlap in a pipelined run, so the view and the call " +
+                            "graph are kept until the end. Only the Spoon model is released in low memory mode");
+                }
+                analyzePipelined(view, entryPoints, packageMapPath, sourceRootPath, jacocoHtmlDirs, reportPath);
+            } else {
+                AnalysisResult result = analyzeReachability(view, entryPoints, packageMapPath, jacocoHtmlDirs,
+                        reportPath);
+                // Write the three different output files
+                PhaseRecorder.record("reports", () -> PathWriter.writeAllFormats(result, reportPath, view,
+                        sourceRootPath, packageMapPath));
+            }
+        }
+        if (current.lowMemory) {
+            releaseSourceModel();
+        }
+        Checkpoint.finish();
         log.info("All analysis reports written successfully.");
+        PhaseRecorder.logPhases();
+        Metrics.reportCaches();
     }
 
     /**
@@ -62,75 +113,309 @@ public class MethodExtractor {
         process(pathToJar, reportPath, packageName, packageMapPath, null, new ArrayList<>());
     }
 
-    private static JavaView createJavaView(String pathToJar) {
-        AnalysisInputLocation inputLocation = new JavaClassPathAnalysisInputLocation(pathToJar);
-        return new JavaView(inputLocation);
+    /**
+     * Clear all the static caches and loaded configuration of the analysis.
+     * Must be called before analyzing another project within the same JVM.
+     */
+    public static void clearCaches() {
+        settings.get().ignoredPrefixes = null;
+        MethodId.clear();
+        SourceCodeExtractor.clearCache();
+        SpoonMethodFinder.clearCache();
+        MethodSlicer.clearCache();
+        RecordCounter.clearCache();
+        CoverageFilter.clearCache();
+        PackageMatcher.clearCache();
+        TestTemplateGenerator.clearCache();
+    }
+
+    /**
+     * Drop the caches that are filled again on demand, but keep the Spoon model and the package map.
+     * This is what the heap budget does when the heap runs full.
+     */
+    static void dropCaches() {
+        SourceCodeExtractor.clearMethodCache();
+        SpoonMethodFinder.clearCache();
+        MethodSlicer.clearCache();
+        RecordCounter.clearCache();
+        CoverageFilter.clearCache();
+    }
+
+    /**
+     * Search the paths, extract them and write the full methods report at the same time, see
+     * {@link AnalysisPipeline}. The report is then in the order the paths are found.
+     */
+    public static void setPipelined(boolean enabled) {
+        settings.get().pipelined = enabled;
+    }
+
+    /**
+     * Release the SootUp view and call graph once the paths are found, and the Spoon model once the reports are
+     * written. Only the modifiers of the entry points are kept for the test templates.
+     */
+    public static void setLowMemory(boolean enabled) {
+        settings.get().lowMemory = enabled;
+    }
+
+    /**
+     * Build the reachability index of the call graph and write it next to the report, see
+     * {@link ReachabilityIndex}.
+     */
+    public static void setReachabilityIndex(boolean enabled) {
+        settings.get().reachabilityIndex = enabled;
+    }
+
+    /**
+     * Search the paths of a random sample of the given size of the (entry point, third-party method) pairs only, and
+     * estimate the totals of all pairs from it, see {@link RandomMethodExtractor}. Zero searches all pairs.
+     */
+    public static void setSampling(int sampleSize, long seed) {
+        Settings current = settings.get();
+        current.sampleSize = sampleSize;
+        current.sampleSeed = seed;
+    }
+
+    /**
+     * Treat the methods of the given package, of the JDK and of the packages in ignored_packages.txt as project
+     * methods.
+     */
+    static void loadIgnoredPrefixes(String packageName) {
+        settings.get().ignoredPrefixes = PackageMatcher.loadIgnoredPrefixes(packageName);
+    }
+
+    /**
+     * Drop the Spoon model and everything that points into it. It is built again if needed.
+     */
+    static void releaseSourceModel() {
+        SourceCodeExtractor.clearCache();
+        MethodSlicer.clearCache();
+        log.info("Released the Spoon model");
+    }
+
+    /**
+     * A view of the jar that resolves the classes outside the project package only when they are reached, see
+     * {@link ProjectView}.
+     */
+    static JavaView createJavaView(String pathToJar, String packageName) {
+        return new ProjectView(pathToJar, packageName);
+    }
+
+    private static Set<MethodSignature> findEntryPoints(JavaView view, String packageName) {
+        Set<MethodSignature> entryPoints = PhaseRecorder.record("entryPoints",
+                () -> detectEntryPoints(view, packageName));
+        log.info("Found " + entryPoints.size() + " public methods as entry points.");
+        return entryPoints;
+    }
+
+    /**
+     * Find the paths like {@link #analyzeReachability}, then keep what the reports need from the view, the modifiers
+     * of the entry points, and return. Nothing else references the view and the call graph after that.
+     */
+    private static AnalysisResult analyzeReleasingView(String pathToJar, String packageName, Path packageMapPath,
+                                                       List<File> jacocoHtmlDirs, String reportPath) {
+        JavaView view = PhaseRecorder.record("view", () -> createJavaView(pathToJar, packageName));
+        Set<MethodSignature> entryPoints = findEntryPoints(view, packageName);
+        AnalysisResult result = analyzeReachability(view, entryPoints, packageMapPath, jacocoHtmlDirs, reportPath);
+        Set<MethodSignature> reportedEntryPoints = new HashSet<>();
+        for (ThirdPartyPath tp : result.thirdPartyPaths()) {
+            reportedEntryPoints.add(tp.entryPoint());
+        }
+        TestTemplateGenerator.captureModifiers(reportedEntryPoints, view);
+        log.info("Released the SootUp view, kept the modifiers of {} entry points", reportedEntryPoints.size());
+        return result;
     }
 
     private static AnalysisResult analyzeReachability(JavaView view, Set<MethodSignature> entryPoints,
-                                                      Path packageMapPath, List<File> jacocoHtmlDirs) {
-        List<ThirdPartyPath> thirdPartyPaths = new ArrayList<>();
+                                                      Path packageMapPath, List<File> jacocoHtmlDirs,
+                                                      String reportPath) {
+        PathTree thirdPartyPaths = new PathTree();
         List<PathStats> allPathStats = new ArrayList<>();
+        ReachabilityIndex reachability = null;
         try {
-            RapidTypeAnalysisAlgorithm cha = new RapidTypeAnalysisAlgorithm(view);
-            CallGraph cg = cha.initialize(new ArrayList<>(entryPoints));
-            // Identify all third-party methods that are actually called in the codebase. We go backwards from
-            // third-party methods to public methods to find all paths. This is because we expect this would be more
-            // efficient than doing it the other way round, as there are usually much fewer third-party methods than
-            // public methods.
-            Set<Map.Entry<MethodSignature, MethodSignature>> thirdPartyPairs = findAllThirdPartyMethodPairs(cg, packageMapPath, jacocoHtmlDirs);
-            log.info("Found {} third-party method call pairs in call graph", thirdPartyPairs.size());
-            // Build reverse call graph for efficient backward traversal. Otherwise, it takes painfully long time to
-            // run with the forward graph (from public methods to third party methods).
-            Map<MethodSignature, Set<MethodSignature>> reverseCallGraph = buildReverseCallGraph(cg);
-            // For each third-party method, find all public methods that can reach it
-            for (Map.Entry<MethodSignature, MethodSignature> pair : thirdPartyPairs) {
-                MethodSignature directCaller = pair.getKey();
-                MethodSignature thirdPartyMethod = pair.getValue();
-                // Find all methods that can reach this third-party method by traversing backwards
-                Set<MethodSignature> reachingMethods = findReachingMethods(
-                        reverseCallGraph,
-                        directCaller,
-                        entryPoints,
-                        packageMapPath
-                );
-                // For each public method that can reach this third-party method,
-                // find the shortest direct path and create a ThirdPartyPath entry.
-                for (MethodSignature publicMethod : reachingMethods) {
-                    if (entryPoints.contains(publicMethod)) {
-                        // Here, we look for the shortest path from the public method to the third-party method.
-                        // We do that because otherwise the number of paths tend to explode.
-                        // Now, we have one path per source (public method) & target (third-party method) pair.
-                        // This is good for our test generation goal because we generate tests for the public method
-                        // in order to reach the third-party method. It is important to note that, we still collect
-                        // multiple paths to reach a third party method, as long as they originate from different public
-                        // methods.
-                        // We collect stats about all paths while finding the shortest path. But this is very expensive.
-                        // We can switch to the original version (findShortestDirectPath) that only finds the shortest
-                        // path if needed.
-                        List<MethodSignature> path = findShortestDirectPathWithStats(
-                                cg,
-                                publicMethod,
-                                thirdPartyMethod,
-                                packageMapPath,
-                                allPathStats
-                        );
-                        if (path != null && !path.isEmpty()) {
-                            ThirdPartyPath tpPath = new ThirdPartyPath(
-                                    publicMethod,
-                                    thirdPartyMethod,
-                                    path
-                            );
-                            thirdPartyPaths.add(tpPath);
-                        }
-                    }
-                }
+            CallGraph cg = PhaseRecorder.record("callGraph", () -> buildCallGraph(view, entryPoints));
+            reachability = writeReachabilityIndex(cg, entryPoints, packageMapPath, jacocoHtmlDirs, reportPath);
+            Settings current = settings.get();
+            if (current.sampleSize > 0) {
+                SampleReport sample = PhaseRecorder.record("paths", () -> RandomMethodExtractor.collectSampledPaths(
+                        cg, entryPoints, packageMapPath, jacocoHtmlDirs, current.sampleSize, current.sampleSeed,
+                        thirdPartyPaths::add, allPathStats));
+                PathWriter.writeSampleReport(sample, reportPath);
+            } else {
+                PhaseRecorder.record("paths", () -> collectThirdPartyPaths(cg, entryPoints, packageMapPath,
+                        jacocoHtmlDirs, thirdPartyPaths, allPathStats));
             }
-            writePathStatsToJson(allPathStats);
+            writePathStatsToJson(allPathStats, reportPath);
         } catch (Exception e) {
             log.error("Failed to initialize call graph.", e);
         }
-        return new AnalysisResult(thirdPartyPaths);
+        return new AnalysisResult(thirdPartyPaths, reachability);
+    }
+
+    /**
+     * Build the reachability index of the call graph and write it next to the report, if it is enabled.
+     * Returns null otherwise.
+     */
+    private static ReachabilityIndex writeReachabilityIndex(CallGraph cg, Set<MethodSignature> entryPoints,
+                                                            Path packageMapPath, List<File> jacocoHtmlDirs,
+                                                            String reportPath) {
+        if (!settings.get().reachabilityIndex) {
+            return null;
+        }
+        ReachabilityIndex index = PhaseRecorder.record("reachabilityIndex",
+                () -> buildReachabilityIndex(cg, entryPoints, packageMapPath, jacocoHtmlDirs));
+        PathWriter.writeReachabilityIndex(index, reportPath);
+        return index;
+    }
+
+    /**
+     * Index which third-party methods each entry point reaches, see {@link ReachabilityIndex}. The calls that are
+     * covered by the tests are left out, as in the pair discovery.
+     */
+    static ReachabilityIndex buildReachabilityIndex(CallGraph cg, Set<MethodSignature> entryPoints,
+                                                    Path packageMapPath, List<File> jacocoHtmlDirs) {
+        CoverageFilter.buildIndex(jacocoHtmlDirs);
+        ReachabilityIndex index = ReachabilityIndex.build(cg, entryPoints,
+                method -> isThirdPartyMethod(method, packageMapPath),
+                (caller, target) -> !isAlreadyCoveredByTests(caller, target, jacocoHtmlDirs));
+        log.info("Indexed the reachability of {} third-party methods from {} entry points",
+                index.thirdPartyMethods().size(), index.entryPoints().size());
+        return index;
+    }
+
+    private static void analyzePipelined(JavaView view, Set<MethodSignature> entryPoints, Path packageMapPath,
+                                         String sourceRootPath, List<File> jacocoHtmlDirs, String reportPath) {
+        try {
+            CallGraph cg = PhaseRecorder.record("callGraph", () -> buildCallGraph(view, entryPoints));
+            writeReachabilityIndex(cg, entryPoints, packageMapPath, jacocoHtmlDirs, reportPath);
+            AnalysisPipeline pipeline = new AnalysisPipeline(view, entryPoints, packageMapPath, sourceRootPath,
+                    jacocoHtmlDirs, reportPath);
+            PhaseRecorder.record("pipeline", () -> {
+                try {
+                    pipeline.run(cg);
+                } catch (Exception e) {
+                    throw new RuntimeException("The analysis pipeline failed", e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to analyze the paths.", e);
+        }
+    }
+
+    /**
+     * Build the call graph with Rapid Type Analysis, starting from the given entry points.
+     */
+    static CallGraph buildCallGraph(JavaView view, Set<MethodSignature> entryPoints) {
+        RapidTypeAnalysisAlgorithm cha = new RapidTypeAnalysisAlgorithm(view);
+        CallGraph cg = cha.initialize(new ArrayList<>(entryPoints));
+        Metrics.add("callGraph.methods", cg.getMethodSignatures().size());
+        Metrics.add("callGraph.calls", cg.callCount());
+        return cg;
+    }
+
+    /**
+     * Find the shortest direct path for every (public method, third-party method) pair in the call graph.
+     * The paths are added to the given tree and the path statistics to the given list.
+     */
+    static void collectThirdPartyPaths(CallGraph cg, Set<MethodSignature> entryPoints, Path packageMapPath,
+                                       List<File> jacocoHtmlDirs, PathTree thirdPartyPaths,
+                                       List<PathStats> allPathStats) {
+        collectThirdPartyPaths(cg, entryPoints, packageMapPath, jacocoHtmlDirs, thirdPartyPaths::add, allPathStats);
+    }
+
+    /**
+     * Find the shortest direct path for every (public method, third-party method) pair in the call graph and hand
+     * each path to the given consumer as soon as it is found.
+     */
+    static void collectThirdPartyPaths(CallGraph cg, Set<MethodSignature> entryPoints, Path packageMapPath,
+                                       List<File> jacocoHtmlDirs, Consumer<List<MethodSignature>> pathFound,
+                                       List<PathStats> allPathStats) {
+        // Identify all third-party methods that are actually called in the codebase. We go backwards from
+        // third-party methods to public methods to find all paths. This is because we expect this would be more
+        // efficient than doing it the other way round, as there are usually much fewer third-party methods than
+        // public methods.
+        Set<Map.Entry<MethodSignature, MethodSignature>> thirdPartyPairs = Metrics.time("pairDiscovery",
+                () -> findAllThirdPartyMethodPairs(cg, packageMapPath, jacocoHtmlDirs));
+        Metrics.add("pairs", thirdPartyPairs.size());
+        log.info("Found {} third-party method call pairs in call graph", thirdPartyPairs.size());
+        // Build reverse call graph for efficient backward traversal. Otherwise, it takes painfully long time to
+        // run with the forward graph (from public methods to third party methods).
+        Map<MethodSignature, Set<MethodSignature>> reverseCallGraph = Metrics.time("reverseGraph",
+                () -> buildReverseCallGraph(cg));
+        // The pairs of a checkpoint are not searched again, their paths come first, in the order they were found
+        Checkpoint checkpoint = Checkpoint.current();
+        if (checkpoint != null) {
+            checkpoint.replayPairs(pathFound, allPathStats);
+        }
+        // For each third-party method, find all public methods that can reach it
+        int processedPairs = 0;
+        Progress progress = Progress.start("pairs", thirdPartyPairs.size());
+        for (Map.Entry<MethodSignature, MethodSignature> pair : thirdPartyPairs) {
+            if (SearchBudget.isDeadlinePassed()) {
+                int skipped = thirdPartyPairs.size() - processedPairs;
+                Metrics.add("budget.skippedPairs", skipped);
+                log.warn("The analysis deadline has passed, skipping the remaining {} of {} pairs", skipped,
+                        thirdPartyPairs.size());
+                break;
+            }
+            processedPairs++;
+            MethodSignature directCaller = pair.getKey();
+            MethodSignature thirdPartyMethod = pair.getValue();
+            if (checkpoint != null && checkpoint.isPairDone(directCaller, thirdPartyMethod)) {
+                progress.advance();
+                continue;
+            }
+            HeapBudget.check();
+            List<List<MethodSignature>> pairPaths = new ArrayList<>();
+            int pairStats = allPathStats.size();
+            // Find all methods that can reach this third-party method by traversing backwards
+            Set<MethodSignature> reachingMethods = Metrics.time("reachability", () -> findReachingMethods(
+                    reverseCallGraph,
+                    directCaller,
+                    entryPoints,
+                    packageMapPath
+            ));
+            // For each public method that can reach this third-party method,
+            // find the shortest direct path and create a ThirdPartyPath entry.
+            for (MethodSignature publicMethod : reachingMethods) {
+                if (entryPoints.contains(publicMethod)) {
+                    // Here, we look for the shortest path from the public method to the third-party method.
+                    // We do that because otherwise the number of paths tend to explode.
+                    // Now, we have one path per source (public method) & target (third-party method) pair.
+                    // This is good for our test generation goal because we generate tests for the public method
+                    // in order to reach the third-party method. It is important to note that, we still collect
+                    // multiple paths to reach a third party method, as long as they originate from different public
+                    // methods.
+                    // We collect stats about all paths while finding the shortest path. But this is very expensive.
+                    // We switch to the original version (findShortestDirectPath) that only finds the shortest
+                    // path when the heap budget runs out.
+                    // Both searches stop when the search budget of the pair runs out, the pair is then recorded as
+                    // truncated in the path stats. The shortest path is searched first: if its own search runs out,
+                    // the pair has no path in the report, if only the statistics run out, they are just incomplete.
+                    List<MethodSignature> path = Metrics.time("shortestPath", () -> HeapBudget.isPathStatsEnabled()
+                            ? findShortestDirectPathWithStats(cg, publicMethod, thirdPartyMethod, packageMapPath,
+                            allPathStats)
+                            : findShortestDirectPathWithinBudget(cg, publicMethod, thirdPartyMethod, packageMapPath,
+                            allPathStats));
+                    if (path != null && !path.isEmpty()) {
+                        // The path starts with the public method and ends with the third-party method
+                        pathFound.accept(path);
+                        pairPaths.add(path);
+                        Metrics.increment("paths");
+                    }
+                }
+            }
+            if (checkpoint != null) {
+                checkpoint.pairDone(directCaller, thirdPartyMethod, pairPaths,
+                        allPathStats.subList(pairStats, allPathStats.size()));
+            }
+            progress.advance();
+        }
+        progress.finish();
+        long truncated = Metrics.get("budget.truncated");
+        if (truncated > 0) {
+            log.warn("{} searches ran out of their budget, the pairs are marked as truncated in the path stats",
+                    truncated);
+        }
     }
 
     /**
@@ -152,15 +437,17 @@ public class MethodExtractor {
     /**
      * Find all third-party method call pairs (caller -> third-party method) in the call graph
      */
-    private static Set<Map.Entry<MethodSignature, MethodSignature>> findAllThirdPartyMethodPairs(
+    static Set<Map.Entry<MethodSignature, MethodSignature>> findAllThirdPartyMethodPairs(
             CallGraph cg, Path packageMapPath, List<File> jacocoHtmlDirs) {
         Set<Map.Entry<MethodSignature, MethodSignature>> thirdPartyPairs = new HashSet<>();
+        // The coverage checks below are then lookups in memory
+        Metrics.time("coverageIndex", () -> CoverageFilter.buildIndex(jacocoHtmlDirs));
         // Iterate through all calls in the call graph
         for (MethodSignature method : cg.getMethodSignatures()) {
             for (CallGraph.Call call : cg.callsFrom(method)) {
                 MethodSignature target = call.getTargetMethodSignature();
                 if (isThirdPartyMethod(target, packageMapPath)) {
-                    if (isAlreadyCoveredByTests(method, target, jacocoHtmlDirs)) {
+                    if (Metrics.time("coverage", () -> isAlreadyCoveredByTests(method, target, jacocoHtmlDirs))) {
                         continue;
                     }
                     thirdPartyPairs.add(Map.entry(method, target));
@@ -173,7 +460,7 @@ public class MethodExtractor {
     /**
      * Build a reverse call graph: maps each method to all methods that call it
      */
-    private static Map<MethodSignature, Set<MethodSignature>> buildReverseCallGraph(CallGraph cg) {
+    static Map<MethodSignature, Set<MethodSignature>> buildReverseCallGraph(CallGraph cg) {
         Map<MethodSignature, Set<MethodSignature>> reverseGraph = new HashMap<>();
         // We could have used the callsTo method here. Just don't wanna touch it when it works.
         for (MethodSignature caller : cg.getMethodSignatures()) {
@@ -189,7 +476,7 @@ public class MethodExtractor {
      * Find all methods (especially public ones) that can reach the target method
      * by traversing backwards through the call graph
      */
-    private static Set<MethodSignature> findReachingMethods(
+    static Set<MethodSignature> findReachingMethods(
             Map<MethodSignature, Set<MethodSignature>> reverseCallGraph,
             MethodSignature target,
             Set<MethodSignature> entryPoints,
@@ -232,18 +519,22 @@ public class MethodExtractor {
 
     /**
      * Find the shortest direct path from start to target where only the target is third-party.
-     * Uses BFS to find the shortest path.
+     * Uses BFS to find the shortest path. Returns null if there is none or the budget runs out first.
      */
     private static List<MethodSignature> findShortestDirectPath(
             CallGraph cg,
             MethodSignature start,
             MethodSignature target,
-            Path packageMapPath) {
+            Path packageMapPath,
+            SearchBudget.Search search) {
         Deque<List<MethodSignature>> queue = new ArrayDeque<>();
         Set<MethodSignature> visited = new HashSet<>();
         queue.add(List.of(start));
         visited.add(start);
         while (!queue.isEmpty()) {
+            if (search.exhausted()) {
+                return null;
+            }
             List<MethodSignature> path = queue.poll();
             MethodSignature last = path.get(path.size() - 1);
             for (CallGraph.Call call : cg.callsFrom(last)) {
@@ -275,12 +566,26 @@ public class MethodExtractor {
      *
      * @return PathStats containing total count and length statistics, or null if no paths exist
      */
-    private static PathStats countPathsAndStats(
+    static PathStats countPathsAndStats(
             CallGraph cg,
             MethodSignature start,
             MethodSignature target,
             Path packageMapPath,
             int maxDepth) {
+        return countPathsAndStats(cg, start, target, packageMapPath, maxDepth, SearchBudget.startSearch());
+    }
+
+    /**
+     * Count the paths within the given budget. When the budget runs out, the statistics of the paths found so far
+     * are returned and marked as truncated, even if no path was found.
+     */
+    static PathStats countPathsAndStats(
+            CallGraph cg,
+            MethodSignature start,
+            MethodSignature target,
+            Path packageMapPath,
+            int maxDepth,
+            SearchBudget.Search search) {
         // Queue stores: current method and current path length
         Deque<PathNode> queue = new ArrayDeque<>();
         // Simple visited set per level to avoid infinite loops within same depth
@@ -291,6 +596,9 @@ public class MethodExtractor {
         queue.add(new PathNode(start, 1));
         visitedPerDepth.computeIfAbsent(1, k -> new HashSet<>()).add(start);
         while (!queue.isEmpty()) {
+            if (search.exhausted()) {
+                break;
+            }
             PathNode current = queue.poll();
             MethodSignature currentMethod = current.method();
             int currentLength = current.pathLength();
@@ -324,15 +632,16 @@ public class MethodExtractor {
                 }
             }
         }
-        if (totalPaths == 0) {
+        if (totalPaths == 0 && !search.isTruncated()) {
             return null;
         }
         return new PathStats(
                 getFilteredMethodSignature(start),
                 getFilteredMethodSignature(target),
                 totalPaths,
-                shortestLength,
-                longestLength
+                totalPaths == 0 ? 0 : shortestLength,
+                longestLength,
+                search.isTruncated()
         );
     }
 
@@ -340,76 +649,93 @@ public class MethodExtractor {
      * Modified version that logs statistics instead of finding shortest path.
      * This can replace the call to findShortestDirectPath in analyzeReachability.
      */
-    private static List<MethodSignature> findShortestDirectPathWithStats(
+    static List<MethodSignature> findShortestDirectPathWithStats(
+            CallGraph cg,
+            MethodSignature start,
+            MethodSignature target,
+            Path packageMapPath,
+            List<PathStats> allStats) {
+        // Find the shortest direct path first, so that a budget used up by the statistics cannot cost the path
+        SearchBudget.Search pathSearch = SearchBudget.startSearch();
+        List<MethodSignature> path = findShortestDirectPath(cg, start, target, packageMapPath, pathSearch);
+        // Get statistics about all paths with the time left to the pair, Can add a depth to overcome memory problems
+        PathStats stats = countPathsAndStats(cg, start, target, packageMapPath, 19, pathSearch.next());
+        recordStats(allStats, stats, start, target, pathSearch);
+        return path;
+    }
+
+    /**
+     * Find the shortest direct path without the statistics, only a truncated search is recorded in the stats.
+     */
+    static List<MethodSignature> findShortestDirectPathWithinBudget(
             CallGraph cg,
             MethodSignature start,
             MethodSignature target,
             Path packageMapPath,
             List<PathStats> allStats) {
-        // Get statistics about all paths, Can add a depth to overcome memory problems
-        PathStats stats = countPathsAndStats(cg, start, target, packageMapPath, 19);
+        SearchBudget.Search search = SearchBudget.startSearch();
+        List<MethodSignature> path = findShortestDirectPath(cg, start, target, packageMapPath, search);
+        recordStats(allStats, null, start, target, search);
+        return path;
+    }
+
+    /**
+     * Add the statistics of a pair, marked as truncated if the shortest path search ran out of budget.
+     */
+    private static void recordStats(List<PathStats> allStats, PathStats stats, MethodSignature start,
+                                    MethodSignature target, SearchBudget.Search pathSearch) {
+        if (pathSearch.isTruncated()) {
+            log.debug("Search from {} to {} truncated by the {} budget", getFilteredMethodSignature(start),
+                    getFilteredMethodSignature(target), pathSearch.truncatedBy());
+            stats = stats == null
+                    ? new PathStats(getFilteredMethodSignature(start), getFilteredMethodSignature(target), 0, 0, 0,
+                    true)
+                    : stats.asTruncated();
+        }
         if (stats != null) {
             allStats.add(stats);
         }
-
-        // Find and return the shortest direct path as before
-        Deque<List<MethodSignature>> queue = new ArrayDeque<>();
-        Set<MethodSignature> visited = new HashSet<>();
-        queue.add(List.of(start));
-        visited.add(start);
-        while (!queue.isEmpty()) {
-            List<MethodSignature> path = queue.poll();
-            MethodSignature last = path.get(path.size() - 1);
-            for (CallGraph.Call call : cg.callsFrom(last)) {
-                MethodSignature next = call.getTargetMethodSignature();
-                if (next.equals(target)) {
-                    List<MethodSignature> completePath = new ArrayList<>(path);
-                    completePath.add(next);
-                    if (isDirectPath(completePath, packageMapPath)) {
-                        return completePath;
-                    }
-                }
-                if (!isThirdPartyMethod(next, packageMapPath) && visited.add(next)) {
-                    List<MethodSignature> newPath = new ArrayList<>(path);
-                    newPath.add(next);
-                    queue.add(newPath);
-                }
-            }
-        }
-        return null;
     }
 
     public static String getFilteredMethodSignature(MethodSignature method) {
-        String className = filterName(method.getDeclClassType().getFullyQualifiedName());
-        String methodName = filterName(method.getName());
-        return className + "." + methodName;
-    }
-
-    private static String filterName(String name) {
-        // Replace $ followed by digit (e.g., $Array1234) with nothing
-        name = name.replaceAll("\\$\\d+", "");
-        // Replace $ followed by letter (e.g. Java.ArrayInitializer) with a dot
-        name = name.replaceAll("\\$(?=[A-Za-z])", ".");
-        return name;
+        // Computed once per method, see MethodId
+        return MethodId.of(method).filteredName();
     }
 
     // Detect entry points - all public methods
-    private static Set<MethodSignature> detectEntryPoints(JavaView view, String packageName) {
-        return view.getClasses()
+    static Set<MethodSignature> detectEntryPoints(JavaView view, String packageName) {
+        // The view resolves its classes one at a time, the methods of each class are then read in parallel
+        List<JavaSootClass> classes = view.getClasses()
                 .filter(c -> c.getType().getPackageName().getName().startsWith(packageName))
-                .flatMap(c -> c.getMethods().stream())
+                .toList();
+        Set<MethodSignature> entryPoints = classes.parallelStream()
+                .flatMap(PhaseRecorder.worker((JavaSootClass c) -> c.getMethods().stream()))
                 .filter(SootMethod::isPublic)
                 .map(SootMethod::getSignature)
                 .collect(Collectors.toSet());
+        Metrics.add("entryPoints", entryPoints.size());
+        return entryPoints;
     }
 
     private static boolean isThirdPartyMethod(MethodSignature method, Path packageMapPath) {
         String packageName = method.getDeclClassType().getPackageName().getName();
         // The ignored prefixes are either loaded from a txt file or are hardcoded (for basic jdk methods). The
         // package name is also added to the ignored prefixes.
-        for (String ignore : ignoredPrefixes) {
+        for (String ignore : settings.get().ignoredPrefixes) {
             if (packageName.startsWith(ignore)) return false;
         }
         return PackageMatcher.containsPackage(packageName, packageMapPath);
     }
+
+    /**
+     * The configuration of a session and the ignored prefixes of its project.
+     */
+    private static final class Settings {
+        volatile Set<String> ignoredPrefixes;
+        boolean pipelined;
+        boolean lowMemory;
+        boolean reachabilityIndex;
+        int sampleSize;
+        long sampleSeed;
+    }
 }
@@ -1,5 +1,10 @@
 package io.github.chains_project.coolname.api_finder;
 
+import io.github.chains_project.coolname.api_finder.model.MethodId;
+import io.github.chains_project.coolname.api_finder.utils.BoundedCache;
+import io.github.chains_project.coolname.api_finder.utils.CacheStats;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.core.signatures.MethodSignature;
@@ -9,13 +14,10 @@ import spoon.reflect.declaration.CtElement;
 import spoon.reflect.declaration.CtExecutable;
 import spoon.reflect.declaration.CtType;
 import spoon.reflect.reference.CtExecutableReference;
-import spoon.reflect.reference.CtVariableReference;
 import spoon.reflect.visitor.filter.TypeFilter;
 
 import java.util.*;
 
-import static io.github.chains_project.coolname.api_finder.SourceCodeExtractor.currentSourceRoot;
-
 /**
  * Performs backward slicing on methods to extract only the relevant statements
  * needed to reach a specific target (usually a third-party method call).
@@ -29,12 +31,8 @@ public class MethodSlicer {
 
     private static final Logger log = LoggerFactory.getLogger(MethodSlicer.class);
 
-    // Cache for slicing results: methodSig->targetSig -> slice
-    // We keep a cache to avoid re-slicing the same methods multiple times
-    // Otherwise, this takes an awful lot of time on large projects
-    private static final Map<String, String> sliceCache = new HashMap<>();
-    protected static int fallbackCount = 0;
-    protected static int sliceCount = 0;
+    // The caches and counters of each session
+    private static final SessionLocal<Slices> slices = SessionLocal.withInitial(Slices::new);
 
     /**
      * Extract method slices for all methods in a path.
@@ -55,7 +53,7 @@ public class MethodSlicer {
         for (int i = 0; i < path.size() - 1; i++) {
             MethodSignature currentMethod = path.get(i);
             MethodSignature targetCall = path.get(i + 1);
-            String slice = performBackwardSlice(model, currentMethod, targetCall);
+            String slice = Metrics.time("slicing", () -> performBackwardSlice(model, currentMethod, targetCall));
             slices.add(slice);
         }
         return slices;
@@ -69,11 +67,12 @@ public class MethodSlicer {
     private static String performBackwardSlice(CtModel model, MethodSignature methodSig,
                                                MethodSignature targetCall) {
         // Check cache first
-        String cacheKey = methodSig.toString() + "->" + (targetCall != null ? targetCall.toString() : "LAST");
-        if (sliceCache.containsKey(cacheKey)) {
-            log.trace("Slice cache hit for {}", cacheKey);
-            return sliceCache.get(cacheKey);
-        }
+        SliceKey cacheKey = new SliceKey(MethodId.of(methodSig), targetCall != null ? MethodId.of(targetCall) : null);
+        String result = slices.get().sliceCache.get(cacheKey, key -> computeSlice(model, methodSig, targetCall));
+        return result != null ? result : "";
+    }
+
+    private static String computeSlice(CtModel model, MethodSignature methodSig, MethodSignature targetCall) {
         String result;
         try {
             // Find the method in the Spoon model using SourceCodeExtractor's cached lookup
@@ -81,35 +80,20 @@ public class MethodSlicer {
             if (executable == null || executable.getBody() == null) {
                 log.debug("Method not found or has no body: {}, falling back to full method extraction", methodSig);
                 // Fall back to full method extraction
-                String sourceRootPath = currentSourceRoot != null ? currentSourceRoot :
-                        SourceCodeExtractor.getCurrentSourceRoot();
-                result = SourceCodeExtractor.extractMethodFromSource(methodSig, sourceRootPath);
-                fallbackCount++;
-                sliceCache.put(cacheKey, result);
-                return result != null ? result : "";
+                return extractFullMethod(methodSig);
             }
             // Find the statements that invoke the target method (handles both regular methods and constructors)
             if (targetCall == null) {
                 log.error("Target call is null for method {}, falling back to full method extraction", methodSig);
                 // Fall back to full method extraction
-                String sourceRootPath = currentSourceRoot != null ? currentSourceRoot :
-                        SourceCodeExtractor.getCurrentSourceRoot();
-                result = SourceCodeExtractor.extractMethodFromSource(methodSig, sourceRootPath);
-                fallbackCount++;
-                sliceCache.put(cacheKey, result);
-                return result != null ? result : "";
+                return extractFullMethod(methodSig);
             }
             List<CtElement> targetInvocations = findTargetInvocations(executable, targetCall);
             if (targetInvocations.isEmpty()) {
                 // If we can't find the target invocation, fall back to full method extraction
                 log.debug("Target invocation not found in method {} for target {}, falling back to full method extraction",
                         methodSig, targetCall);
-                String sourceRootPath = currentSourceRoot != null ? currentSourceRoot :
-                        SourceCodeExtractor.getCurrentSourceRoot();
-                result = SourceCodeExtractor.extractMethodFromSource(methodSig, sourceRootPath);
-                fallbackCount++;
-                sliceCache.put(cacheKey, result);
-                return result != null ? result : "";
+                return extractFullMethod(methodSig);
             }
             // Perform backward slicing from each target invocation
             Set<CtStatement> relevantStatements = new LinkedHashSet<>();
@@ -124,23 +108,26 @@ public class MethodSlicer {
                     methodSig, e.getMessage());
             // Fall back to full method extraction on any exception
             try {
-                String sourceRootPath = currentSourceRoot != null ? currentSourceRoot :
-                        SourceCodeExtractor.getCurrentSourceRoot();
-                result = SourceCodeExtractor.extractMethodFromSource(methodSig, sourceRootPath);
-                fallbackCount++;
-                result = result != null ? result : "";
+                String fullMethod = extractFullMethod(methodSig);
+                result = fullMethod != null ? fullMethod : "";
             } catch (Exception fallbackException) {
                 log.warn("Full method extraction also failed for {}: {}",
                         methodSig, fallbackException.getMessage());
                 result = "";
             }
         }
-        // Cache the result
-        sliceCache.put(cacheKey, result);
-        sliceCount++;
+        slices.get().sliceCount++;
         return result;
     }
 
+    /**
+     * The whole method instead of a slice, null if the source is not found.
+     */
+    private static String extractFullMethod(MethodSignature methodSig) {
+        slices.get().fallbackCount++;
+        return SourceCodeExtractor.extractMethodFromSource(methodSig, SourceCodeExtractor.getCurrentSourceRoot());
+    }
+
     /**
      * Extract the method signature as a string (method declaration without body).
      * Returns the full declaration including modifiers, return type, method name, parameters, and throws clause.
@@ -200,7 +187,7 @@ public class MethodSlicer {
      * Unfortunately, we have to re-implement some of the logic here as we need CtMethod.
      * If someone comes up with a better way to do this, please PR!
      */
-    private static CtExecutable<?> findExecutableInModel(CtModel model, MethodSignature methodSig) {
+    static CtExecutable<?> findExecutableInModel(CtModel model, MethodSignature methodSig) {
         String className = methodSig.getDeclClassType().getFullyQualifiedName();
         String methodName = methodSig.getName();
         // Find the type (handles inner classes too)
@@ -243,7 +230,7 @@ public class MethodSlicer {
      * Find all invocations in the method that call the target method.
      * This is our slicing criterion - the points from which we work backwards.
      */
-    private static List<CtElement> findTargetInvocations(CtExecutable<?> executable, MethodSignature targetCall) {
+    static List<CtElement> findTargetInvocations(CtExecutable<?> executable, MethodSignature targetCall) {
         String targetMethodName = targetCall.getName();
         String targetClassName = targetCall.getDeclClassType().getFullyQualifiedName();
         List<CtElement> matchingElements = new ArrayList<>();
@@ -288,100 +275,24 @@ public class MethodSlicer {
      * Data dependencies (variables used in the target)
      * Control dependencies (conditions that must be true to reach the target)
      * <p>
-     * Lookups should be O(1). Hope this helps performance, otherwise you can even finish a movie while this runs.
+     * The def-use index of the method is built once and shared by all slices of the method, a slice is then a walk
+     * over the precomputed definitions and uses. No more finishing a movie while this runs.
      */
-    private static Set<CtStatement> computeBackwardSlice(CtExecutable<?> executable, CtElement targetElement) {
-        Set<CtStatement> slice = new LinkedHashSet<>();
-        Set<CtVariableReference<?>> relevantVariables = new HashSet<>();
-        Queue<CtElement> worklist = new LinkedList<>();
+    static Set<CtStatement> computeBackwardSlice(CtExecutable<?> executable, CtElement targetElement) {
         // This is the statement containing the target invocation
         CtStatement targetStmt = getStatementContaining(targetElement);
         if (targetStmt == null) {
-            return slice;
+            return new LinkedHashSet<>();
         }
-        slice.add(targetStmt);
-        worklist.add(targetElement);
-        // Collect all variables used in the target invocation
-        List<CtVariableAccess<?>> variableAccesses = targetElement.getElements(
-                new TypeFilter<>(CtVariableAccess.class)
-        );
-        variableAccesses.forEach(va -> relevantVariables.add(va.getVariable()));
-        // Get all statements in the method body and create an index for O(1) lookup
-        List<CtStatement> allStatements = executable.getBody().getStatements();
-        Map<CtStatement, Integer> stmtIndexMap = new HashMap<>();
-        for (int i = 0; i < allStatements.size(); i++) {
-            stmtIndexMap.put(allStatements.get(i), i);
-        }
-        // Work backwards through statements
-        Set<CtStatement> visited = new HashSet<>();
-        while (!worklist.isEmpty()) {
-            CtElement current = worklist.poll();
-            CtStatement currentStmt = getStatementContaining(current);
-            if (currentStmt == null || !visited.add(currentStmt)) {
-                continue;
-            }
-            Integer currentIndex = stmtIndexMap.get(currentStmt);
-            if (currentIndex == null) {
-                continue;
-            }
-            // Look at all statements before the current one
-            for (int i = currentIndex - 1; i >= 0; i--) {
-                CtStatement predecessor = allStatements.get(i);
-                // Skip if already processed
-                if (slice.contains(predecessor)) {
-                    continue;
-                }
-                boolean isRelevant = false;
-                // Check data dependencies - does this statement define a variable we use?
-                if (predecessor instanceof CtAssignment<?, ?> assignment) {
-                    CtExpression<?> assigned = assignment.getAssigned();
-                    if (assigned instanceof CtVariableAccess<?> varAccess) {
-                        CtVariableReference<?> assignedVar = varAccess.getVariable();
-                        if (relevantVariables.contains(assignedVar)) {
-                            isRelevant = true;
-                            // Now we also care about variables used in the right-hand side
-                            List<CtVariableAccess<?>> rhsVars = assignment.getAssignment().getElements(
-                                    new TypeFilter<>(CtVariableAccess.class)
-                            );
-                            rhsVars.forEach(va -> relevantVariables.add(va.getVariable()));
-                        }
-                    }
-                } else if (predecessor instanceof CtLocalVariable<?> varDecl) {
-                    // Variable declarations
-                    if (relevantVariables.contains(varDecl.getReference())) {
-                        isRelevant = true;
-                        // Add variables used in the initialization
-                        if (varDecl.getDefaultExpression() != null) {
-                            List<CtVariableAccess<?>> initVars = varDecl.getDefaultExpression().getElements(
-                                    new TypeFilter<>(CtVariableAccess.class)
-                            );
-                            initVars.forEach(va -> relevantVariables.add(va.getVariable()));
-                        }
-                    }
-                }
-                // Check control dependencies - conditions that control whether we reach the target
-                if (predecessor instanceof CtIf || predecessor instanceof CtLoop ||
-                        predecessor instanceof CtSwitch) {
-                    // For now, we include all control flow statements
-                    // A more sophisticated approach would check if the target is in the controlled block
-                    // Obviously, by more sophisticated we mean at least check something rather than lazily passing
-                    // true. But, we are not gonna spend time on that, it is far more interesting to type these
-                    // comments instead.
-                    isRelevant = true;
+        return getDefUseIndex(executable).backwardSlice(targetElement, targetStmt);
+    }
 
-                    // Add variables used in the condition
-                    List<CtVariableAccess<?>> condVars = predecessor.getElements(
-                            new TypeFilter<>(CtVariableAccess.class)
-                    );
-                    condVars.forEach(va -> relevantVariables.add(va.getVariable()));
-                }
-                // If this statement is relevant and not already in slice, add it
-                if (isRelevant && slice.add(predecessor)) {
-                    worklist.add(predecessor);
-                }
-            }
-        }
-        return slice;
+    /**
+     * The def-use index of a method, built on first use. Spoon compares elements structurally, so the index is
+     * cached by identity of the method.
+     */
+    private static DefUseIndex getDefUseIndex(CtExecutable<?> executable) {
+        return slices.get().defUseCache.get(new ExecutableKey(executable), key -> new DefUseIndex(executable));
     }
 
     /**
@@ -433,14 +344,62 @@ public class MethodSlicer {
      * Clear the slice cache. Useful when processing multiple projects.
      */
     public static void clearCache() {
-        sliceCache.clear();
+        Slices current = slices.get();
+        current.sliceCache.clear();
+        current.defUseCache.clear();
+        current.fallbackCount = 0;
+        current.sliceCount = 0;
         log.debug("Cleared slice cache");
     }
 
+    /**
+     * Key of the slice cache. A null target stands for the last call in the method.
+     */
+    private record SliceKey(MethodId method, MethodId target) {
+    }
+
+    /**
+     * Key of the def-use cache, the method compared by identity.
+     */
+    private static final class ExecutableKey {
+
+        private final CtExecutable<?> executable;
+
+        ExecutableKey(CtExecutable<?> executable) {
+            this.executable = executable;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ExecutableKey key && key.executable == executable;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(executable);
+        }
+    }
+
     /**
      * Get cache statistics for monitoring/debugging.
      */
-    public static String getCacheStats() {
-        return String.format("Slice cache: %d entries", sliceCache.size());
+    public static CacheStats getCacheStats() {
+        return slices.get().sliceCache.stats();
+    }
+
+    /**
+     * The slices of a session and the counters of how they were made.
+     */
+    private static final class Slices {
+        // Cache for slicing results: (method, target) -> slice
+        // We keep a cache to avoid re-slicing the same methods multiple times
+        // Otherwise, this takes an awful lot of time on large projects
+        final BoundedCache<SliceKey, String> sliceCache = BoundedCache.byWeight("slice",
+                16 * 1024 * 1024, (key, slice) -> slice == null ? 1 : slice.length());
+        // Def-use index per method, shared by the slices towards all targets of the method
+        final BoundedCache<ExecutableKey, DefUseIndex> defUseCache = BoundedCache.byWeight("defUse",
+                1_000_000, (key, index) -> index.size());
+        int fallbackCount = 0;
+        int sliceCount = 0;
     }
 }
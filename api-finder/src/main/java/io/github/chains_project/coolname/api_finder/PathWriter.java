@@ -1,10 +1,16 @@
 package io.github.chains_project.coolname.api_finder;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.github.chains_project.coolname.api_finder.model.*;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.Progress;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.core.model.SootMethod;
@@ -12,9 +18,13 @@ import sootup.core.signatures.MethodSignature;
 import sootup.java.core.JavaSootMethod;
 import sootup.java.core.views.JavaView;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -27,22 +37,42 @@ import java.util.stream.Collectors;
 public class PathWriter {
 
     private static final Logger log = LoggerFactory.getLogger(PathWriter.class);
+    private static final SessionLocal<Options> options = SessionLocal.withInitial(Options::new);
+
+    /**
+     * The layout of the full methods report.
+     */
+    public enum Format {
+        // Every path with all its sources, class members and imports
+        FULL,
+        // The sources, class members and imports in tables, referred to by id from the paths
+        DICTIONARY
+    }
 
     /**
      * Write all three output formats from the analysis result.
      */
-    public static void writeAllFormats(AnalysisResult result, String basePath, JavaView view, String sourceRootPath) {
+    public static void writeAllFormats(AnalysisResult result, String basePath, JavaView view, String sourceRootPath,
+                                       Path packageMapPath) {
         // Generate the three output file paths based on the base path
-        String fullMethodsPath = basePath.replace(".json", "_full_methods.json");
+        String fullMethodsPath = fullMethodsFile(basePath).getPath();
         // Full methods for all methods in the path. Gives complete implementation details.
-        writeFullMethodsFormat(result, fullMethodsPath, view, sourceRootPath);
+        writeFullMethodsFormat(result, fullMethodsPath, view, sourceRootPath, packageMapPath);
+    }
+
+    /**
+     * The full methods report of the given report path.
+     */
+    static File fullMethodsFile(String basePath) {
+        return new File(basePath.replace(".json", "_full_methods.json"));
     }
 
     /**
-     * Write path statistics (to justify the decision to select the shortest path) to a JSON file for analysis
+     * Write path statistics (to justify the decision to select the shortest path) to a JSON file for analysis.
+     * The file is placed in the same folder as the report.
      */
-    public static void writePathStatsToJson(List<PathStats> stats) {
-        String statsPath = "path-stats.json";
+    public static void writePathStatsToJson(List<PathStats> stats, String basePath) {
+        String statsPath = resolveSibling(basePath, "path-stats.json").getPath();
         try (FileWriter writer = new FileWriter(statsPath)) {
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             gson.toJson(stats, writer);
@@ -52,81 +82,392 @@ public class PathWriter {
         }
     }
 
+    /**
+     * Write the reachability index to reachability-index.json in the same folder as the report.
+     */
+    public static void writeReachabilityIndex(ReachabilityIndex index, String basePath) {
+        File indexFile = resolveSibling(basePath, "reachability-index.json");
+        try {
+            new ObjectMapper().writeValue(indexFile, index.toData());
+            log.info("Reachability index written to: {}", indexFile.getPath());
+        } catch (IOException e) {
+            log.error("Failed to write the reachability index", e);
+        }
+    }
+
+    /**
+     * Write the estimates of a sampled analysis to sample-estimates.json in the same folder as the report.
+     */
+    public static void writeSampleReport(SampleReport report, String basePath) {
+        File reportFile = resolveSibling(basePath, "sample-estimates.json");
+        try {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+            log.info("Sample estimates written to: {}", reportFile.getPath());
+        } catch (IOException e) {
+            log.error("Failed to write the sample estimates", e);
+        }
+    }
+
+    /**
+     * Read a reachability index written by {@link #writeReachabilityIndex}.
+     */
+    public static ReachabilityIndex readReachabilityIndex(File indexFile) throws IOException {
+        return ReachabilityIndex.fromData(new ObjectMapper().readValue(indexFile, ReachabilityIndex.Data.class));
+    }
+
+    /**
+     * Resolve a file with the given name in the same folder as the report. When the report is in the current folder,
+     * so is the returned file.
+     */
+    public static File resolveSibling(String basePath, String fileName) {
+        File parent = basePath == null ? null : new File(basePath).getParentFile();
+        return new File(parent, fileName);
+    }
+
+    /**
+     * Only write the given number of simplest paths, zero or less writes all paths.
+     */
+    public static void setTopK(int k) {
+        options.get().topK = k;
+    }
+
+    /**
+     * Write the full methods report as newline-delimited JSON shards instead of one JSON file, zero or less writes
+     * one file. See {@link ShardedPathWriter}.
+     */
+    static void setSharding(int shardCount, ShardedPathWriter.ShardBy by) {
+        Options current = options.get();
+        current.shards = shardCount;
+        current.shardBy = by;
+    }
+
+    /**
+     * Write the full methods report in the given format, see {@link DictionaryPathWriter}.
+     */
+    public static void setFormat(Format reportFormat) {
+        options.get().format = reportFormat;
+    }
+
     /**
      * Write paths with full method bodies for all methods
      * This gives the complete implementation of every method in the path
      */
-    private static void writeFullMethodsFormat(AnalysisResult result, String outputPath, JavaView view, String sourceRootPath) {
+    private static void writeFullMethodsFormat(AnalysisResult result, String outputPath, JavaView view,
+                                               String sourceRootPath, Path packageMapPath) {
         ObjectMapper mapper = new ObjectMapper();
         mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        File outputFile = new File(outputPath);
+        if (options.get().topK > 0) {
+            writeTopKFullMethodsFormat(result, mapper, outputFile, view, sourceRootPath, packageMapPath);
+            return;
+        }
+        // Only used once the heap budget asks for streaming
+        RecordWriter stream = null;
         try {
             List<FullMethodsPathData> fullMethodsPaths = new ArrayList<>();
-            for (ThirdPartyPath tp : result.thirdPartyPaths()) {
-                List<String> fullMethods = extractFullMethodBodies(view, tp.path(), sourceRootPath);
-                ClassMemberData classMembers =
-                        SourceCodeExtractor.extractClassMembers(tp.entryPoint(), sourceRootPath);
-                Set<String> importsSet = SourceCodeExtractor.extractRequiredImports(
-                        tp.entryPoint(), tp.path(), sourceRootPath);
-                List<String> imports = new ArrayList<>(importsSet);
-                Collections.sort(imports);
-                // This is for the test template generation.  This would be another prompt format if needed.
-                String testTemplate = TestTemplateGenerator.generateTestTemplate(tp, view);
-                // Count conditions in the path
-                int conditionCount = RecordCounter.countConditionsInPath(tp.path(), sourceRootPath);
-                log.debug("Path to {} has {} conditions",
-                        MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod()),
-                        conditionCount);
-                // Build the path as strings
-                List<String> pathStrings = tp.path().stream()
-                        .map(MethodExtractor:: getFilteredMethodSignature)
-                        .collect(Collectors.toList());
-                FullMethodsPathData data = new FullMethodsPathData(
-                        MethodExtractor.getFilteredMethodSignature(tp.entryPoint()),
-                        MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod()),
-                        pathStrings,
-                        fullMethods,
-                        classMembers.constructors(),
-                        classMembers.setters(),
-                        classMembers.getters(),
-                        imports,
-                        testTemplate,
-                        conditionCount
-                );
+            // The paths extracted before a resumed run are taken from the checkpoint
+            Checkpoint checkpoint = Checkpoint.current();
+            List<FullMethodsPathData> extracted = checkpoint == null ? List.of() : checkpoint.completedRecords();
+            List<ThirdPartyPath> paths = result.thirdPartyPaths();
+            Progress progress = Progress.start("records", paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                HeapBudget.check();
+                FullMethodsPathData data;
+                if (i < extracted.size()) {
+                    data = extracted.get(i);
+                } else {
+                    ThirdPartyPath tp = paths.get(i);
+                    // We do not want the third-party method itself in the report, only the methods of the project
+                    List<MethodSignature> projectPath = tp.projectPath();
+                    // Count conditions in the path
+                    int conditionCount = Metrics.time("conditionCount",
+                            () -> RecordCounter.countConditionsInPath(projectPath, sourceRootPath));
+                    data = toPathData(tp, projectPath, conditionCount, view, sourceRootPath);
+                    if (checkpoint != null) {
+                        checkpoint.recordDone(i, hasAllSources(data) ? data : null);
+                    }
+                }
                 // We don't want a record without any source code extracted. This could happen when the source code
                 // could not be retrieved and returned null instead.
                 // We skip all these paths, because we don't want any bias.
-                if (data.methodSources().stream().noneMatch(Objects::isNull))
-                    fullMethodsPaths.add(data);
+                if (data != null && hasAllSources(data)) {
+                    if (stream == null && HeapBudget.isStreamingOutput()) {
+                        stream = startStreaming(mapper, outputFile, packageMapPath, fullMethodsPaths);
+                        fullMethodsPaths.clear();
+                    }
+                    if (stream != null) {
+                        stream.write(data);
+                    } else {
+                        fullMethodsPaths.add(data);
+                    }
+                } else {
+                    Metrics.increment("paths.skipped");
+                }
+                progress.advance();
             }
-            // Sort paths:  primary by condition count, secondary by path length (both ascending)
-            Collections.sort(fullMethodsPaths);
-            log.info("Sorted {} paths by condition count and path length", fullMethodsPaths.size());
-            if (! fullMethodsPaths.isEmpty()) {
-                log.info("Simplest path has {} conditions and {} methods",
-                        fullMethodsPaths.get(0).conditionCount(),
-                        fullMethodsPaths.get(0).path().size());
-                log.info("Most complex path has {} conditions and {} methods",
-                        fullMethodsPaths.get(fullMethodsPaths.size() - 1).conditionCount(),
-                        fullMethodsPaths.get(fullMethodsPaths.size() - 1).path().size());
+            progress.finish();
+            if (stream != null) {
+                RecordWriter finished = stream;
+                stream = null;
+                finished.close();
+                Metrics.add("paths.written", finished.written());
+                log.info("Streamed {} full methods paths to {}, the paths after the heap budget ran out are not sorted",
+                        finished.written(), outputFile.getAbsolutePath());
+                return;
             }
-            File outputFile = new File(outputPath);
-            mapper.writeValue(outputFile, Map.of("fullMethodsPaths", fullMethodsPaths));
-            log.info("Successfully wrote {} full methods paths to {}", fullMethodsPaths.size(),
-                    outputFile.getAbsolutePath());
+            writeSorted(mapper, outputFile, packageMapPath, fullMethodsPaths);
+        } catch (Exception e) {
+            log.error("Failed to write full methods format to JSON", e);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    log.error("Failed to close the streamed full methods report", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write only the K simplest paths. All paths are ranked by the cheap part first, the condition count (cached per
+     * method) and the length, and the sources, class members, imports and templates are only extracted for the best
+     * K. Paths skipped for missing sources are replaced by the next best ones.
+     */
+    private static void writeTopKFullMethodsFormat(AnalysisResult result, ObjectMapper mapper, File outputFile,
+                                                   JavaView view, String sourceRootPath, Path packageMapPath) {
+        try {
+            List<ThirdPartyPath> paths = result.thirdPartyPaths();
+            int[] conditionCounts = new int[paths.size()];
+            int[] lengths = new int[paths.size()];
+            for (int i = 0; i < paths.size(); i++) {
+                List<MethodSignature> projectPath = paths.get(i).projectPath();
+                conditionCounts[i] = Metrics.time("conditionCount",
+                        () -> RecordCounter.countConditionsInPath(projectPath, sourceRootPath));
+                lengths[i] = projectPath.size();
+            }
+            // Same order as FullMethodsPathData, ties are broken by the order of the paths
+            Comparator<Integer> byRank = Comparator.<Integer>comparingInt(i -> conditionCounts[i])
+                    .thenComparingInt(i -> lengths[i])
+                    .thenComparingInt(i -> i);
+            BitSet ranked = new BitSet(paths.size());
+            List<FullMethodsPathData> fullMethodsPaths = new ArrayList<>();
+            int topK = options.get().topK;
+            while (fullMethodsPaths.size() < topK) {
+                List<Integer> best = selectBest(paths.size(), topK - fullMethodsPaths.size(), byRank, ranked);
+                if (best.isEmpty()) {
+                    break;
+                }
+                for (int i : best) {
+                    HeapBudget.check();
+                    ranked.set(i);
+                    ThirdPartyPath tp = paths.get(i);
+                    FullMethodsPathData data = toPathData(tp, tp.projectPath(), conditionCounts[i], view,
+                            sourceRootPath);
+                    if (hasAllSources(data)) {
+                        fullMethodsPaths.add(data);
+                    } else {
+                        Metrics.increment("paths.skipped");
+                    }
+                }
+            }
+            log.info("Extracted the {} simplest of {} paths", fullMethodsPaths.size(), paths.size());
+            writeSorted(mapper, outputFile, packageMapPath, fullMethodsPaths);
         } catch (Exception e) {
             log.error("Failed to write full methods format to JSON", e);
         }
     }
 
+    /**
+     * The best k paths that are not ranked yet, best first. Keeps a bounded max-heap of k paths.
+     */
+    private static List<Integer> selectBest(int pathCount, int k, Comparator<Integer> byRank, BitSet ranked) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, byRank.reversed());
+        for (int i = ranked.nextClearBit(0); i < pathCount; i = ranked.nextClearBit(i + 1)) {
+            heap.add(i);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<Integer> best = new ArrayList<>(heap);
+        best.sort(byRank);
+        return best;
+    }
+
+    /**
+     * Extract everything the report needs for a path besides the condition count.
+     */
+    static FullMethodsPathData toPathData(ThirdPartyPath tp, List<MethodSignature> projectPath,
+                                                  int conditionCount, JavaView view, String sourceRootPath) {
+        List<String> fullMethods = Metrics.time("extraction",
+                () -> extractFullMethodBodies(view, projectPath, sourceRootPath));
+        ClassMemberData classMembers = Metrics.time("classMembers",
+                () -> SourceCodeExtractor.extractClassMembers(tp.entryPoint(), sourceRootPath));
+        Set<String> importsSet = Metrics.time("imports", () -> SourceCodeExtractor.extractRequiredImports(
+                tp.entryPoint(), projectPath, sourceRootPath));
+        List<String> imports = new ArrayList<>(importsSet);
+        Collections.sort(imports);
+        // This is for the test template generation.  This would be another prompt format if needed.
+        String testTemplate = Metrics.time("template",
+                () -> TestTemplateGenerator.generateTestTemplate(tp, view));
+        log.debug("Path to {} has {} conditions",
+                MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod()),
+                conditionCount);
+        // Build the path as strings
+        List<String> pathStrings = projectPath.stream()
+                .map(MethodExtractor:: getFilteredMethodSignature)
+                .collect(Collectors.toList());
+        return new FullMethodsPathData(
+                MethodExtractor.getFilteredMethodSignature(tp.entryPoint()),
+                MethodExtractor.getFilteredMethodSignature(tp.thirdPartyMethod()),
+                pathStrings,
+                fullMethods,
+                classMembers.constructors(),
+                classMembers.setters(),
+                classMembers.getters(),
+                imports,
+                testTemplate,
+                conditionCount
+        );
+    }
+
+    static boolean hasAllSources(FullMethodsPathData data) {
+        return data.methodSources().stream().noneMatch(Objects::isNull);
+    }
+
+    /**
+     * Sort the paths and write them.
+     */
+    private static void writeSorted(ObjectMapper mapper, File outputFile, Path packageMapPath,
+                                    List<FullMethodsPathData> fullMethodsPaths) {
+        // Sort paths:  primary by condition count, secondary by path length (both ascending)
+        Collections.sort(fullMethodsPaths);
+        log.info("Sorted {} paths by condition count and path length", fullMethodsPaths.size());
+        if (! fullMethodsPaths.isEmpty()) {
+            log.info("Simplest path has {} conditions and {} methods",
+                    fullMethodsPaths.get(0).conditionCount(),
+                    fullMethodsPaths.get(0).path().size());
+            log.info("Most complex path has {} conditions and {} methods",
+                    fullMethodsPaths.get(fullMethodsPaths.size() - 1).conditionCount(),
+                    fullMethodsPaths.get(fullMethodsPaths.size() - 1).path().size());
+        }
+        Options current = options.get();
+        Metrics.time("write", () -> {
+            try {
+                if (current.shards > 0 || current.format != Format.FULL) {
+                    try (RecordWriter writer = openWriter(mapper, outputFile, packageMapPath)) {
+                        for (FullMethodsPathData data : fullMethodsPaths) {
+                            writer.write(data);
+                        }
+                    }
+                } else {
+                    mapper.writeValue(outputFile, Map.of("fullMethodsPaths", fullMethodsPaths));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Metrics.add("paths.written", fullMethodsPaths.size());
+        if (current.shards > 0) {
+            log.info("Successfully wrote {} full methods paths to {} shards, see {}", fullMethodsPaths.size(),
+                    current.shards, ShardedPathWriter.indexFile(outputFile).getAbsolutePath());
+        } else if (current.format == Format.DICTIONARY) {
+            log.info("Successfully wrote {} full methods paths to {}", fullMethodsPaths.size(),
+                    DictionaryPathWriter.dictionaryFile(outputFile).getAbsolutePath());
+        } else {
+            log.info("Successfully wrote {} full methods paths to {}", fullMethodsPaths.size(),
+                    outputFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Open the report for streaming and write the paths collected so far, sorted as usual.
+     * The paths that follow are written as they come.
+     */
+    private static RecordWriter startStreaming(ObjectMapper mapper, File outputFile, Path packageMapPath,
+                                               List<FullMethodsPathData> collected) throws IOException {
+        Collections.sort(collected);
+        RecordWriter stream = openWriter(mapper, outputFile, packageMapPath);
+        for (FullMethodsPathData data : collected) {
+            stream.write(data);
+        }
+        return stream;
+    }
+
+    /**
+     * Open a writer of the full methods report in the configured format, the records are written in the given order.
+     */
+    static RecordWriter openWriter(ObjectMapper mapper, File outputFile, Path packageMapPath) throws IOException {
+        Options current = options.get();
+        if (current.shards > 0) {
+            return new ShardedPathWriter(outputFile, current.shards, current.shardBy, packageMapPath);
+        }
+        if (current.format == Format.DICTIONARY) {
+            return new DictionaryPathWriter(outputFile);
+        }
+        return new JsonArrayWriter(mapper, outputFile);
+    }
+
+    /**
+     * Writes the records of the full methods report one at a time.
+     */
+    interface RecordWriter extends Closeable, Flushable {
+
+        void write(FullMethodsPathData data) throws IOException;
+
+        /**
+         * The number of records written so far.
+         */
+        int written();
+    }
+
+    /**
+     * Writes the records into the usual report, {"fullMethodsPaths": [...]}. The object and array stay open until
+     * the writer is closed.
+     */
+    private static class JsonArrayWriter implements RecordWriter {
+
+        private final ObjectMapper mapper;
+        private final JsonGenerator generator;
+        private int written;
+
+        JsonArrayWriter(ObjectMapper mapper, File outputFile) throws IOException {
+            this.mapper = mapper;
+            this.generator = mapper.createGenerator(outputFile, JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("fullMethodsPaths");
+        }
+
+        @Override
+        public void write(FullMethodsPathData data) throws IOException {
+            mapper.writeValue(generator, data);
+            written++;
+        }
+
+        @Override
+        public int written() {
+            return written;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+        }
+    }
+
     /**
      * Extract full method bodies for all methods in a path.
      * This gives the complete implementation of each method.
      */
     private static List<String> extractFullMethodBodies(JavaView view, List<MethodSignature> path, String sourceRootPath) {
         List<String> methodBodies = new ArrayList<>();
-        // We do not want the bytecode of the third-party method itself
-        // Comment this line if the decision is changed.
-        path.remove(path.size() - 1);
         for (MethodSignature methodSig : path) {
             String body = extractMethodBody(view, methodSig, sourceRootPath);
             methodBodies.add(body);
@@ -185,4 +526,14 @@ public class PathWriter {
             return "// Error extracting method body: " + e.getMessage();
         }
     }
+
+    /**
+     * The report options of a session.
+     */
+    private static final class Options {
+        int topK;
+        int shards;
+        ShardedPathWriter.ShardBy shardBy = ShardedPathWriter.ShardBy.ENTRY_POINT;
+        Format format = Format.FULL;
+    }
 }
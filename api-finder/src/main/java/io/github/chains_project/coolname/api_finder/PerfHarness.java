@@ -0,0 +1,184 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.chains_project.coolname.api_finder.model.*;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs the full pipeline over the projects of a batch manifest and records wall time, CPU time, GC time and peak
+ * heap of every phase (see {@link PhaseRecorder}). The result is written as a JSON report, which can be compared
+ * against the report of an earlier run to catch performance regressions.
+ * <p>
+ * Every project is run a few times after some warm-up runs, and the median of each metric is reported. A metric
+ * only counts as a regression if it grew by more than the threshold and by more than a fixed noise floor, because
+ * small phases of small projects vary a lot between runs.
+ */
+public class PerfHarness {
+
+    private static final Logger log = LoggerFactory.getLogger(PerfHarness.class);
+    private static final long NOISE_FLOOR_MILLIS = 100;
+    private static final long NOISE_FLOOR_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Run the projects of the manifest and write the report.
+     *
+     * @param manifestPath Path to a batch manifest (see {@link BatchRunner}).
+     * @param outputDir    Folder where the analysis reports of each project are written to.
+     * @param reportPath   Path where the performance report is written to.
+     * @param baselinePath Path to a stored performance report to compare with (optional, can be null).
+     * @param threshold    Allowed growth of a metric in percent before it counts as a regression.
+     * @param warmups      Number of runs per project that are not measured.
+     * @param repetitions  Number of measured runs per project.
+     * @return The number of regressions plus the number of projects that failed.
+     */
+    public static int run(Path manifestPath, Path outputDir, Path reportPath, Path baselinePath, double threshold,
+                          int warmups, int repetitions) throws IOException {
+        List<BatchEntry> entries = BatchRunner.readManifest(manifestPath);
+        Path baseDir = manifestPath.toAbsolutePath().getParent();
+        // The retained heap is only comparable between runs if it is measured after a full collection
+        PhaseRecorder.setPreciseRetainedHeap(true);
+        List<ProjectPerf> projects = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            BatchEntry entry = entries.get(i);
+            String name = BatchRunner.projectName(entry, i);
+            try {
+                projects.add(measure(entry, name, baseDir, outputDir, warmups, repetitions));
+            } catch (Exception e) {
+                log.error("Failed to measure {}", name, e);
+                failed++;
+            } finally {
+                MethodExtractor.clearCaches();
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        PerfReport report = new PerfReport(System.getProperty("java.version"), runtime.availableProcessors(),
+                runtime.maxMemory(), projects);
+        if (reportPath.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportPath.toFile(), report);
+        log.info("Performance report written to: {}", reportPath);
+        if (baselinePath == null) {
+            return failed;
+        }
+        PerfReport baseline = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .readValue(baselinePath.toFile(), PerfReport.class);
+        List<String> regressions = compare(baseline, report, threshold);
+        if (regressions.isEmpty()) {
+            log.info("No regressions above {}% compared to {}", threshold, baselinePath);
+        } else {
+            log.error("{} regressions above {}% compared to {}:", regressions.size(), threshold, baselinePath);
+            regressions.forEach(r -> log.error("  {}", r));
+        }
+        return regressions.size() + failed;
+    }
+
+    private static ProjectPerf measure(BatchEntry entry, String name, Path baseDir, Path outputDir, int warmups,
+                                       int repetitions) throws IOException {
+        String reportPath = BatchRunner.resolveReportPath(entry, name, baseDir, outputDir);
+        // All measured runs of a phase, by phase name in the order of the pipeline
+        Map<String, List<PhaseMetrics>> runsByPhase = new LinkedHashMap<>();
+        for (int run = 0; run < warmups + repetitions; run++) {
+            boolean measured = run >= warmups;
+            log.info("{}: {} run {}/{}", name, measured ? "measured" : "warm-up",
+                    measured ? run - warmups + 1 : run + 1, measured ? repetitions : warmups);
+            // Every run has to start from scratch, otherwise the later runs only hit the caches.
+            MethodExtractor.clearCaches();
+            MethodExtractor.process(
+                    BatchRunner.resolve(baseDir, entry.jarPath()),
+                    reportPath,
+                    entry.packageName(),
+                    Path.of(BatchRunner.resolve(baseDir, entry.packageMap())),
+                    BatchRunner.resolve(baseDir, entry.sourceCodePath()),
+                    BatchRunner.resolveAll(baseDir, entry.jacocoFiles()));
+            if (measured) {
+                for (PhaseMetrics phase : PhaseRecorder.getPhases()) {
+                    runsByPhase.computeIfAbsent(phase.phase(), k -> new ArrayList<>()).add(phase);
+                }
+            }
+        }
+        List<PhaseMetrics> phases = new ArrayList<>();
+        runsByPhase.forEach((phase, runs) -> phases.add(new PhaseMetrics(
+                phase,
+                median(runs, PhaseMetrics::wallMillis),
+                median(runs, PhaseMetrics::cpuMillis),
+                median(runs, PhaseMetrics::gcMillis),
+                median(runs, PhaseMetrics::allocatedBytes),
+                median(runs, PhaseMetrics::peakHeapBytes),
+                median(runs, PhaseMetrics::retainedHeapBytes),
+                // The counts do not depend on timing, so the ones of the last run are as good as any
+                runs.get(runs.size() - 1).counters())));
+        phases.forEach(p -> log.info("{}: {} took {} ms wall, {} ms CPU, {} ms GC, allocated {} MB, {} MB peak heap, "
+                        + "{} MB retained", name, p.phase(), p.wallMillis(), p.cpuMillis(), p.gcMillis(),
+                p.allocatedBytes() / (1024 * 1024), p.peakHeapBytes() / (1024 * 1024),
+                p.retainedHeapBytes() / (1024 * 1024)));
+        return new ProjectPerf(name, repetitions, phases);
+    }
+
+    /**
+     * Compare every phase of every project that is also in the baseline and describe the metrics that regressed.
+     */
+    static List<String> compare(PerfReport baseline, PerfReport current, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        Map<String, ProjectPerf> baselineProjects = new HashMap<>();
+        baseline.projects().forEach(p -> baselineProjects.put(p.name(), p));
+        for (ProjectPerf project : current.projects()) {
+            ProjectPerf baselineProject = baselineProjects.get(project.name());
+            if (baselineProject == null) {
+                log.warn("{} is not in the baseline, skipping the comparison", project.name());
+                continue;
+            }
+            Map<String, PhaseMetrics> baselinePhases = new HashMap<>();
+            baselineProject.phases().forEach(p -> baselinePhases.put(p.phase(), p));
+            for (PhaseMetrics phase : project.phases()) {
+                PhaseMetrics before = baselinePhases.get(phase.phase());
+                if (before == null) {
+                    continue;
+                }
+                String prefix = project.name() + "/" + phase.phase();
+                check(regressions, prefix + " wall time", before.wallMillis(), phase.wallMillis(), "ms",
+                        NOISE_FLOOR_MILLIS, threshold);
+                check(regressions, prefix + " CPU time", before.cpuMillis(), phase.cpuMillis(), "ms",
+                        NOISE_FLOOR_MILLIS, threshold);
+                check(regressions, prefix + " GC time", before.gcMillis(), phase.gcMillis(), "ms",
+                        NOISE_FLOOR_MILLIS, threshold);
+                check(regressions, prefix + " allocated", before.allocatedBytes() / (1024 * 1024),
+                        phase.allocatedBytes() / (1024 * 1024), "MB", NOISE_FLOOR_BYTES / (1024 * 1024), threshold);
+                check(regressions, prefix + " peak heap", before.peakHeapBytes() / (1024 * 1024),
+                        phase.peakHeapBytes() / (1024 * 1024), "MB", NOISE_FLOOR_BYTES / (1024 * 1024), threshold);
+                check(regressions, prefix + " retained heap", before.retainedHeapBytes() / (1024 * 1024),
+                        phase.retainedHeapBytes() / (1024 * 1024), "MB", NOISE_FLOOR_BYTES / (1024 * 1024),
+                        threshold);
+            }
+        }
+        return regressions;
+    }
+
+    private static void check(List<String> regressions, String metric, long before, long after, String unit,
+                              long noiseFloor, double threshold) {
+        double change = before == 0 ? (after > 0 ? Double.POSITIVE_INFINITY : 0) : 100.0 * (after - before) / before;
+        String line = String.format("%s: %d %s -> %d %s (%+.1f%%)", metric, before, unit, after, unit, change);
+        if (after - before > noiseFloor && change > threshold) {
+            regressions.add(line);
+        } else {
+            log.info("  {}", line);
+        }
+    }
+
+    private static long median(List<PhaseMetrics> runs, ToLongFunction<PhaseMetrics> metric) {
+        long[] values = runs.stream().mapToLong(metric).sorted().toArray();
+        return values[values.length / 2];
+    }
+}
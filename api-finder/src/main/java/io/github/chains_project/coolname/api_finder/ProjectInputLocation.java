@@ -0,0 +1,222 @@
+package io.github.chains_project.coolname.api_finder;
+
+import org.objectweb.asm.ClassReader;
+import sootup.core.frontend.SootClassSource;
+import sootup.core.inputlocation.AnalysisInputLocation;
+import sootup.core.jimple.basic.NoPositionInformation;
+import sootup.core.model.ClassModifier;
+import sootup.core.model.Position;
+import sootup.core.model.SootClass;
+import sootup.core.model.SootField;
+import sootup.core.model.SootMethod;
+import sootup.core.model.SourceType;
+import sootup.core.transform.BodyInterceptor;
+import sootup.core.types.ClassType;
+import sootup.core.views.View;
+import sootup.java.bytecode.frontend.inputlocation.JavaClassPathAnalysisInputLocation;
+import sootup.java.core.JavaIdentifierFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The class path of a project, where only the classes of the project package are listed. A view over it resolves the
+ * project classes when all its classes are asked for, e.g. to find the entry points, and any other class only when it
+ * is asked for by name, e.g. when the call graph reaches it. Shaded and fat jars contain thousands of dependency
+ * classes, which are then never parsed unless the project calls them.
+ * <p>
+ * The type hierarchy still needs every class, to dispatch a call to all the implementations of a type. It is built
+ * from the {@link #readClassHeaders() headers} of the class files, see {@link ProjectView}.
+ */
+class ProjectInputLocation implements AnalysisInputLocation {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final JavaClassPathAnalysisInputLocation classPath;
+    private final String classPathEntries;
+    private final String packageName;
+
+    ProjectInputLocation(String classPathEntries, String packageName) {
+        this.classPath = new JavaClassPathAnalysisInputLocation(classPathEntries);
+        this.classPathEntries = classPathEntries;
+        this.packageName = packageName;
+    }
+
+    /**
+     * Any class of the class path, whether it is in the project package or not.
+     */
+    @Override
+    public Optional<? extends SootClassSource> getClassSource(ClassType type, View view) {
+        return classPath.getClassSource(type, view);
+    }
+
+    /**
+     * The classes of the project package.
+     */
+    @Override
+    public Stream<? extends SootClassSource> getClassSources(View view) {
+        // A class in package a.b is in a folder that starts with a/b, the package itself is checked on the class name
+        String folderPrefix = packageName.replace('.', '/');
+        Set<ClassType> types = new LinkedHashSet<>();
+        visitClassFiles(folderPrefix, (className, content) -> {
+            ClassType type = view.getIdentifierFactory().getClassType(className);
+            if (type.getPackageName().getName().startsWith(packageName)) {
+                types.add(type);
+            }
+        });
+        return types.stream().flatMap(type -> classPath.getClassSource(type, view).stream());
+    }
+
+    @Override
+    public SourceType getSourceType() {
+        return classPath.getSourceType();
+    }
+
+    @Override
+    public List<BodyInterceptor> getBodyInterceptors() {
+        return classPath.getBodyInterceptors();
+    }
+
+    /**
+     * Every class of the class path with only its modifiers, superclass and interfaces, read from the header of its
+     * class file. Much cheaper than resolving the classes, which parses their methods.
+     */
+    List<SootClass> readClassHeaders() {
+        JavaIdentifierFactory factory = JavaIdentifierFactory.getInstance();
+        Map<ClassType, SootClass> classes = new LinkedHashMap<>();
+        visitClassFiles("", (className, content) -> {
+            ClassType type = factory.getClassType(className);
+            if (!classes.containsKey(type)) {
+                classes.put(type, new SootClass(new ClassHeader(this, type, new ClassReader(content.get())),
+                        getSourceType()));
+            }
+        });
+        return new ArrayList<>(classes.values());
+    }
+
+    /**
+     * Visit the class files under the given folder of every class path entry, in the order of the class path.
+     */
+    private void visitClassFiles(String folderPrefix, ClassFileVisitor visitor) {
+        for (String entry : classPathEntries.split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+            try {
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> files = Files.walk(path)) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            String fileName = path.relativize(file).toString().replace(File.separatorChar, '/');
+                            if (isClassFile(fileName, folderPrefix)) {
+                                visitor.visit(className(fileName), () -> Files.readAllBytes(file));
+                            }
+                        }
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    try (ZipFile archive = new ZipFile(path.toFile())) {
+                        for (ZipEntry zipEntry : Collections.list(archive.entries())) {
+                            if (isClassFile(zipEntry.getName(), folderPrefix)) {
+                                visitor.visit(className(zipEntry.getName()), () -> {
+                                    try (InputStream in = archive.getInputStream(zipEntry)) {
+                                        return in.readAllBytes();
+                                    }
+                                });
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the classes of " + entry, e);
+            }
+        }
+    }
+
+    private static boolean isClassFile(String fileName, String folderPrefix) {
+        // The META-INF folder holds the module descriptors and the classes of other Java versions
+        return fileName.startsWith(folderPrefix) && fileName.endsWith(CLASS_SUFFIX)
+                && !fileName.startsWith("META-INF/") && !fileName.endsWith("module-info.class");
+    }
+
+    private static String className(String fileName) {
+        return fileName.substring(0, fileName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+
+    private interface ClassFileVisitor {
+        void visit(String className, ClassFileContent content) throws IOException;
+    }
+
+    private interface ClassFileContent {
+        byte[] get() throws IOException;
+    }
+
+    /**
+     * A class without fields and methods, for the type hierarchy.
+     */
+    private static final class ClassHeader extends SootClassSource {
+
+        private final Set<ClassModifier> modifiers = EnumSet.noneOf(ClassModifier.class);
+        private final Optional<ClassType> superclass;
+        private final Set<ClassType> interfaces = new LinkedHashSet<>();
+
+        ClassHeader(AnalysisInputLocation inputLocation, ClassType type, ClassReader reader) {
+            super(inputLocation, type, Path.of(reader.getClassName() + CLASS_SUFFIX));
+            JavaIdentifierFactory factory = JavaIdentifierFactory.getInstance();
+            for (ClassModifier modifier : ClassModifier.values()) {
+                if ((reader.getAccess() & modifier.getBytecode()) != 0) {
+                    modifiers.add(modifier);
+                }
+            }
+            superclass = Optional.ofNullable(reader.getSuperName())
+                    .map(name -> factory.getClassType(name.replace('/', '.')));
+            for (String name : reader.getInterfaces()) {
+                interfaces.add(factory.getClassType(name.replace('/', '.')));
+            }
+        }
+
+        @Override
+        public Collection<? extends SootMethod> resolveMethods() {
+            return List.of();
+        }
+
+        @Override
+        public Collection<? extends SootField> resolveFields() {
+            return List.of();
+        }
+
+        @Override
+        public Set<ClassModifier> resolveModifiers() {
+            return modifiers;
+        }
+
+        @Override
+        public Set<? extends ClassType> resolveInterfaces() {
+            return interfaces;
+        }
+
+        @Override
+        public Optional<? extends ClassType> resolveSuperclass() {
+            return superclass;
+        }
+
+        @Override
+        public Optional<? extends ClassType> resolveOuterClass() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Position resolvePosition() {
+            return NoPositionInformation.getInstance();
+        }
+
+        @Override
+        public SootClass buildClass(SourceType sourceType) {
+            return new SootClass(this, sourceType);
+        }
+    }
+}
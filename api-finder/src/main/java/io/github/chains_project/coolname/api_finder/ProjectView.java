@@ -0,0 +1,98 @@
+package io.github.chains_project.coolname.api_finder;
+
+import sootup.core.IdentifierFactory;
+import sootup.core.model.SootClass;
+import sootup.core.model.SootField;
+import sootup.core.model.SootMethod;
+import sootup.core.signatures.FieldSignature;
+import sootup.core.signatures.MethodSignature;
+import sootup.core.typehierarchy.TypeHierarchy;
+import sootup.core.typehierarchy.ViewTypeHierarchy;
+import sootup.core.types.ClassType;
+import sootup.core.views.View;
+import sootup.java.core.views.JavaView;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A view of a project jar that resolves the classes of the project package up front and every other class on demand,
+ * see {@link ProjectInputLocation}. Its type hierarchy covers all classes of the jar, read from their class file
+ * headers, so the call graph dispatches calls exactly as over a view that resolves the whole jar.
+ */
+class ProjectView extends JavaView {
+
+    private final ProjectInputLocation inputLocation;
+    private TypeHierarchy typeHierarchy;
+
+    ProjectView(String pathToJar, String packageName) {
+        this(new ProjectInputLocation(pathToJar, packageName));
+    }
+
+    private ProjectView(ProjectInputLocation inputLocation) {
+        super(inputLocation);
+        this.inputLocation = inputLocation;
+    }
+
+    @Override
+    public synchronized TypeHierarchy getTypeHierarchy() {
+        if (typeHierarchy == null) {
+            typeHierarchy = new HeaderView(inputLocation.readClassHeaders(), getIdentifierFactory())
+                    .getTypeHierarchy();
+        }
+        return typeHierarchy;
+    }
+
+    /**
+     * The class headers as a view, which is all the type hierarchy reads. Its type hierarchy is the one of the
+     * headers as well.
+     */
+    private static final class HeaderView implements View {
+
+        private final Map<ClassType, SootClass> classes;
+        private final IdentifierFactory identifierFactory;
+        private TypeHierarchy typeHierarchy;
+
+        HeaderView(List<SootClass> classes, IdentifierFactory identifierFactory) {
+            this.classes = classes.stream().collect(Collectors.toMap(SootClass::getType, Function.identity()));
+            this.identifierFactory = identifierFactory;
+        }
+
+        @Override
+        public Stream<SootClass> getClasses() {
+            return classes.values().stream();
+        }
+
+        @Override
+        public Optional<SootClass> getClass(ClassType type) {
+            return Optional.ofNullable(classes.get(type));
+        }
+
+        @Override
+        public Optional<? extends SootField> getField(FieldSignature signature) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<? extends SootMethod> getMethod(MethodSignature signature) {
+            return Optional.empty();
+        }
+
+        @Override
+        public synchronized TypeHierarchy getTypeHierarchy() {
+            if (typeHierarchy == null) {
+                typeHierarchy = new ViewTypeHierarchy(this);
+            }
+            return typeHierarchy;
+        }
+
+        @Override
+        public IdentifierFactory getIdentifierFactory() {
+            return identifierFactory;
+        }
+    }
+}
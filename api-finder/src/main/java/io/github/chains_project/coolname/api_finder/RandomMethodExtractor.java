@@ -1,232 +1,220 @@
 package io.github.chains_project.coolname.api_finder;
 
-import io.github.chains_project.coolname.api_finder.model.AnalysisResult;
-import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
-import io.github.chains_project.coolname.api_finder.utils.PackageMatcher;
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.model.SampleReport;
+import io.github.chains_project.coolname.api_finder.utils.HeapBudget;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.Progress;
+import io.github.chains_project.coolname.api_finder.utils.SearchBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.callgraph.CallGraph;
-import sootup.callgraph.RapidTypeAnalysisAlgorithm;
-import sootup.core.inputlocation.AnalysisInputLocation;
-import sootup.core.model.SootMethod;
 import sootup.core.signatures.MethodSignature;
-import sootup.java.bytecode.frontend.inputlocation.JavaClassPathAnalysisInputLocation;
-import sootup.java.core.views.JavaView;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static io.github.chains_project.coolname.api_finder.CoverageFilter.isAlreadyCoveredByTests;
-
+import java.util.function.Consumer;
+
+/**
+ * Searches the paths of a uniform random sample of the (entry point, third-party method) pairs, instead of all of
+ * them, and estimates the totals of all pairs from the sample. On huge projects, most of the time goes into the path
+ * searches, so a sample of a few hundred pairs gives representative numbers at a fraction of the cost.
+ * <p>
+ * The pairs are the ones the full analysis searches: an entry point and a third-party method it reaches through
+ * project methods only, with the calls that are covered by the tests left out. They are enumerated by the same
+ * backward traversal from the direct callers, in a fixed order, and a reservoir keeps a uniform sample of them without
+ * collecting them all. The same seed draws the same sample from the same jar.
+ */
 public class RandomMethodExtractor {
 
-    static final Logger log = LoggerFactory.getLogger(MethodExtractor.class);
-    static Set<String> ignoredPrefixes;
-
-    /***************************************************************************
-     * ToDo: Get the latest version of process from the original MethodExtractor,
-     ***************************************************************************/
-
-
-    private static JavaView createJavaView(String pathToJar) {
-        AnalysisInputLocation inputLocation = new JavaClassPathAnalysisInputLocation(pathToJar);
-        return new JavaView(inputLocation);
-    }
+    static final Logger log = LoggerFactory.getLogger(RandomMethodExtractor.class);
+    static final double CONFIDENCE = 0.95;
+    // The z value of a two-sided 95% confidence interval
+    private static final double Z = 1.959964;
+    private static final Comparator<MethodSignature> BY_NAME = Comparator.comparing(MethodSignature::toString);
 
-    private static AnalysisResult analyzeReachability(JavaView view, Set<MethodSignature> entryPoints,
-                                                      Path packageMapPath, List<File> jacocoHtmlDirs) {
-        List<ThirdPartyPath> thirdPartyPaths = new ArrayList<>();
-        try {
-            RapidTypeAnalysisAlgorithm cha = new RapidTypeAnalysisAlgorithm(view);
-            CallGraph cg = cha.initialize(new ArrayList<>(entryPoints));
-            // Identify all third-party methods that are actually called in the codebase. We go backwards from
-            // third-party methods to public methods to find all paths. This is because we expect this would be more
-            // efficient than doing it the other way round, as there are usually much fewer third-party methods than
-            // public methods.
-            Set<MethodSignature> allThirdPartyMethods = findAllThirdPartyMethods(cg, packageMapPath, jacocoHtmlDirs);
-            log.info("Found {} third-party methods in call graph", allThirdPartyMethods.size());
-            // Build reverse call graph for efficient backward traversal. Otherwise, it takes painfully long time to
-            // run with the forward graph (from public methods to third party methods).
-            Map<MethodSignature, Set<MethodSignature>> reverseCallGraph = buildReverseCallGraph(cg);
-            // For each third-party method, find all public methods that can reach it
-            for (MethodSignature thirdPartyMethod : allThirdPartyMethods) {
-                // Find paths from this third-party method to entry points (public methods) by traversing backwards.
-                // This finds the path during backward traversal instead of doing a separate forward search.
-                // We still collect multiple paths to reach a third party method, as long as they originate from
-                // different public methods.
-                List<ThirdPartyPath> pathsForThisMethod = findPathsToEntryPoints(
-                        reverseCallGraph,
-                        thirdPartyMethod,
-                        entryPoints,
-                        packageMapPath
-                );
-                thirdPartyPaths.addAll(pathsForThisMethod);
+    /**
+     * Draw a sample of the given size of the pairs, find the shortest direct path of every sampled pair, hand the
+     * paths to the given consumer and the path statistics to the given list, and estimate the totals of all pairs.
+     */
+    static SampleReport collectSampledPaths(CallGraph cg, Set<MethodSignature> entryPoints, Path packageMapPath,
+                                            List<File> jacocoHtmlDirs, int sampleSize, long seed,
+                                            Consumer<List<MethodSignature>> pathFound, List<PathStats> allPathStats) {
+        Random random = new Random(seed);
+        Sample sample = Metrics.time("sampling", () -> samplePairs(cg, entryPoints, packageMapPath, jacocoHtmlDirs,
+                sampleSize, random));
+        Metrics.add("sample.population", sample.population);
+        Metrics.add("sample.pairs", sample.pairs.size());
+        log.info("Sampled {} of {} (entry point, third-party method) pairs with seed {}", sample.pairs.size(),
+                sample.population, seed);
+        // In a random order, so that the pairs searched before the deadline are a uniform sample as well
+        Collections.shuffle(sample.pairs, random);
+        Observations observations = new Observations(sample.pairs.size());
+        Progress progress = Progress.start("sampled pairs", sample.pairs.size());
+        for (Map.Entry<MethodSignature, MethodSignature> pair : sample.pairs) {
+            if (SearchBudget.isDeadlinePassed()) {
+                int skipped = sample.pairs.size() - observations.analyzed;
+                Metrics.add("budget.skippedPairs", skipped);
+                log.warn("The analysis deadline has passed, the estimates are based on {} of the {} sampled pairs",
+                        observations.analyzed, sample.pairs.size());
+                break;
             }
-        } catch (Exception e) {
-            log.error("Failed to initialize call graph.", e);
+            HeapBudget.check();
+            MethodSignature entryPoint = pair.getKey();
+            MethodSignature thirdPartyMethod = pair.getValue();
+            int pairStats = allPathStats.size();
+            boolean withStats = HeapBudget.isPathStatsEnabled();
+            List<MethodSignature> path = Metrics.time("shortestPath", () -> withStats
+                    ? MethodExtractor.findShortestDirectPathWithStats(cg, entryPoint, thirdPartyMethod,
+                    packageMapPath, allPathStats)
+                    : MethodExtractor.findShortestDirectPathWithinBudget(cg, entryPoint, thirdPartyMethod,
+                    packageMapPath, allPathStats));
+            if (path != null && !path.isEmpty()) {
+                pathFound.accept(path);
+                Metrics.increment("paths");
+            }
+            observations.add(path, withStats, allPathStats.size() > pairStats ? allPathStats.get(pairStats) : null);
+            progress.advance();
         }
-        return new AnalysisResult(thirdPartyPaths);
+        progress.finish();
+        return observations.estimate(seed, sample.population, sample.pairs.size());
     }
 
     /**
-     * Find paths from a third-party method to entry points (public methods) by traversing backwards.
-     * This tracks the complete path during traversal, eliminating the need for a separate forward search.
-     * Returns one path for each (public method -> third-party method) pair.
+     * Enumerate the pairs and keep a uniform random sample of them (reservoir sampling). The third-party methods and
+     * the entry points that reach them are enumerated in the order of their names, so that the sample only depends
+     * on the seed and the call graph.
      */
-    private static List<ThirdPartyPath> findPathsToEntryPoints(
-            Map<MethodSignature, Set<MethodSignature>> reverseCallGraph,
-            MethodSignature thirdPartyMethod,
-            Set<MethodSignature> entryPoints,
-            Path packageMapPath) {
-        List<ThirdPartyPath> paths = new ArrayList<>();
-        // Queue stores: current method and the path taken to reach it (in reverse order: third-party -> ... -> public)
-        Deque<PathNode> queue = new ArrayDeque<>();
-        // Track visited methods to avoid cycles
-        Set<MethodSignature> visited = new HashSet<>();
-        // Start from the third-party method
-        queue.add(new PathNode(thirdPartyMethod, new ArrayList<>(List.of(thirdPartyMethod))));
-        visited.add(thirdPartyMethod);
-        while (!queue.isEmpty()) {
-            PathNode current = queue.poll();
-            MethodSignature currentMethod = current.method;
-            List<MethodSignature> currentPath = current.path;
-            // Get all methods that call the current method
-            Set<MethodSignature> callers = reverseCallGraph.getOrDefault(currentMethod, Collections.emptySet());
-            for (MethodSignature caller : callers) {
-                if (visited.contains(caller)) {
-                    continue;
-                }
-                // Skip third-party methods (we only want project methods in the path)
-                if (isThirdPartyMethod(caller, packageMapPath)) {
-                    continue;
-                }
-                visited.add(caller);
-                // Create new path by adding this caller
-                List<MethodSignature> newPath = new ArrayList<>(currentPath);
-                newPath.add(caller);
-                // If this is a public method (entry point), we found a complete path
-                if (entryPoints.contains(caller)) {
-                    // Reverse the path to get: public -> ... -> third-party
-                    List<MethodSignature> forwardPath = new ArrayList<>(newPath);
-                    Collections.reverse(forwardPath);
-                    // Verify this is a direct path (only target is third-party).
-                    // Here, we do not consider the paths that have third party methods in between.
-                    if (isDirectPath(forwardPath, packageMapPath)) {
-                        ThirdPartyPath tpPath = new ThirdPartyPath(
-                                caller,  // public method (entry point)
-                                thirdPartyMethod,  // third-party method
-                                forwardPath  // complete path from public to third-party
-                        );
-                        paths.add(tpPath);
-                    }
-                    // Don't continue traversing beyond public methods
+    private static Sample samplePairs(CallGraph cg, Set<MethodSignature> entryPoints, Path packageMapPath,
+                                      List<File> jacocoHtmlDirs, int sampleSize, Random random) {
+        Map<MethodSignature, List<MethodSignature>> directCallers = new TreeMap<>(BY_NAME);
+        for (Map.Entry<MethodSignature, MethodSignature> pair : MethodExtractor.findAllThirdPartyMethodPairs(cg,
+                packageMapPath, jacocoHtmlDirs)) {
+            directCallers.computeIfAbsent(pair.getValue(), k -> new ArrayList<>()).add(pair.getKey());
+        }
+        Map<MethodSignature, Set<MethodSignature>> reverseCallGraph = MethodExtractor.buildReverseCallGraph(cg);
+        List<Map.Entry<MethodSignature, MethodSignature>> reservoir = new ArrayList<>(sampleSize);
+        long population = 0;
+        for (Map.Entry<MethodSignature, List<MethodSignature>> target : directCallers.entrySet()) {
+            // The entry points of all the direct callers of the third-party method, each pair is counted once
+            Set<MethodSignature> reaching = new TreeSet<>(BY_NAME);
+            for (MethodSignature directCaller : target.getValue()) {
+                reaching.addAll(MethodExtractor.findReachingMethods(reverseCallGraph, directCaller, entryPoints,
+                        packageMapPath));
+            }
+            for (MethodSignature entryPoint : reaching) {
+                population++;
+                Map.Entry<MethodSignature, MethodSignature> pair = Map.entry(entryPoint, target.getKey());
+                if (reservoir.size() < sampleSize) {
+                    reservoir.add(pair);
                 } else {
-                    // Continue traversing backward
-                    queue.add(new PathNode(caller, newPath));
+                    long slot = random.nextLong(population);
+                    if (slot < sampleSize) {
+                        reservoir.set((int) slot, pair);
+                    }
                 }
             }
         }
-        return paths;
+        return new Sample(reservoir, population);
     }
 
-    /**
-     * Helper class to store a method and the path taken to reach it during traversal
-     */
-    private static class PathNode {
-        MethodSignature method;
-        List<MethodSignature> path;
-        PathNode(MethodSignature method, List<MethodSignature> path) {
-            this.method = method;
-            this.path = path;
-        }
+    private record Sample(List<Map.Entry<MethodSignature, MethodSignature>> pairs, long population) {
     }
 
     /**
-     * Check if a path is direct - meaning only the target method is third-party,
-     * all intermediate methods are from the project itself
+     * What the searches of the analyzed pairs found.
      */
-    private static boolean isDirectPath(List<MethodSignature> path, Path packageMapPath) {
-        if (path.size() <= 1) return true;
-        // Check all methods except the last one - they should not be third-party
-        for (int i = 0; i < path.size() - 1; i++) {
-            if (isThirdPartyMethod(path.get(i), packageMapPath)) {
-                return false;
-            }
+    private static final class Observations {
+
+        private final double[] found;
+        private final double[] truncated;
+        private final double[] paths;
+        private final List<Double> lengths = new ArrayList<>();
+        private int analyzed;
+        private boolean allWithStats = true;
+
+        Observations(int capacity) {
+            found = new double[capacity];
+            truncated = new double[capacity];
+            paths = new double[capacity];
         }
-        // The last method should be third-party
-        return isThirdPartyMethod(path.get(path.size() - 1), packageMapPath);
-    }
 
-    /**
-     * Find all third-party methods that are actually called in the call graph
-     */
-    private static Set<MethodSignature> findAllThirdPartyMethods(CallGraph cg, Path packageMapPath,
-                                                                 List<File> jacocoHtmlDirs) {
-        Set<MethodSignature> thirdPartyMethods = new HashSet<>();
-        // Iterate through all calls in the call graph
-        for (MethodSignature method : cg.getMethodSignatures()) {
-            for (CallGraph.Call call : cg.callsFrom(method)) {
-                MethodSignature target = call.getTargetMethodSignature();
-                if (isThirdPartyMethod(target, packageMapPath)) {
-                    if (isAlreadyCoveredByTests(method, target, jacocoHtmlDirs)) {
-                        continue;
-                    }
-                    thirdPartyMethods.add(target);
-                }
+        void add(List<MethodSignature> path, boolean withStats, PathStats stats) {
+            boolean hasPath = path != null && !path.isEmpty();
+            found[analyzed] = hasPath ? 1 : 0;
+            truncated[analyzed] = stats != null && stats.truncated() ? 1 : 0;
+            paths[analyzed] = stats == null ? 0 : stats.totalPaths();
+            if (hasPath) {
+                lengths.add((double) path.size());
             }
+            allWithStats &= withStats;
+            analyzed++;
         }
-        return thirdPartyMethods;
-    }
 
-    /**
-     * Build a reverse call graph: maps each method to all methods that call it
-     */
-    private static Map<MethodSignature, Set<MethodSignature>> buildReverseCallGraph(CallGraph cg) {
-        Map<MethodSignature, Set<MethodSignature>> reverseGraph = new HashMap<>();
-        // We could have used the callsTo method here. Just don't wanna touch it when it works.
-        for (MethodSignature caller : cg.getMethodSignatures()) {
-            for (CallGraph.Call call : cg.callsFrom(caller)) {
-                MethodSignature callee = call.getTargetMethodSignature();
-                reverseGraph.computeIfAbsent(callee, k -> new HashSet<>()).add(caller);
+        /**
+         * The totals are the population times the sample means. Their intervals use the normal approximation with
+         * the finite population correction, so they shrink to the exact value as the sample grows to the population.
+         */
+        SampleReport estimate(long seed, long population, int sampleSize) {
+            List<SampleReport.Estimate> estimates = new ArrayList<>();
+            estimates.add(new SampleReport.Estimate("pairs", population, (double) population, (double) population));
+            estimates.add(total("pairsWithPath", found, population));
+            estimates.add(total("truncatedPairs", truncated, population));
+            // Without the statistics of every pair, the number of paths would be underestimated
+            if (allWithStats) {
+                estimates.add(total("paths", paths, population));
+            }
+            double[] lengthValues = lengths.stream().mapToDouble(Double::doubleValue).toArray();
+            if (lengthValues.length > 0) {
+                estimates.add(mean("shortestPathLength", lengthValues));
             }
+            return new SampleReport(seed, population, sampleSize, analyzed, CONFIDENCE, estimates);
         }
-        return reverseGraph;
-    }
 
-    public static String getFilteredMethodSignature(MethodSignature method) {
-        String className = filterName(method.getDeclClassType().getFullyQualifiedName());
-        String methodName = filterName(method.getName());
-        return className + "." + methodName;
-    }
+        private SampleReport.Estimate total(String quantity, double[] values, long population) {
+            int n = analyzed;
+            double mean = mean(values, n);
+            if (n == population) {
+                return new SampleReport.Estimate(quantity, mean * n, mean * n, mean * n);
+            }
+            if (n < 2) {
+                return new SampleReport.Estimate(quantity, mean * population, null, null);
+            }
+            double correction = Math.sqrt((double) (population - n) / (population - 1));
+            double margin = Z * standardDeviation(values, n, mean) / Math.sqrt(n) * correction;
+            return new SampleReport.Estimate(quantity, mean * population, Math.max(0, mean - margin) * population,
+                    (mean + margin) * population);
+        }
 
-    private static String filterName(String name) {
-        // Replace $ followed by digit (e.g., $Array1234) with nothing
-        name = name.replaceAll("\\$\\d+", "");
-        // Replace $ followed by letter (e.g. Java.ArrayInitializer) with a dot
-        name = name.replaceAll("\\$(?=[A-Za-z])", ".");
-        return name;
-    }
+        /**
+         * The mean of the pairs that have a path. How many pairs have one is only estimated, so the interval is
+         * computed without the finite population correction, which makes it slightly wider.
+         */
+        private static SampleReport.Estimate mean(String quantity, double[] values) {
+            int n = values.length;
+            double mean = mean(values, n);
+            if (n < 2) {
+                return new SampleReport.Estimate(quantity, mean, null, null);
+            }
+            double margin = Z * standardDeviation(values, n, mean) / Math.sqrt(n);
+            return new SampleReport.Estimate(quantity, mean, mean - margin, mean + margin);
+        }
 
-    // Detect entry points - all public methods
-    private static Set<MethodSignature> detectEntryPoints(JavaView view, String packageName) {
-        return view.getClasses()
-                .filter(c -> c.getType().getPackageName().getName().startsWith(packageName))
-                .flatMap(c -> c.getMethods().stream())
-                .filter(SootMethod::isPublic)
-                .map(SootMethod::getSignature)
-                .collect(Collectors.toSet());
-    }
+        private static double mean(double[] values, int n) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += values[i];
+            }
+            return n == 0 ? 0 : sum / n;
+        }
 
-    private static boolean isThirdPartyMethod(MethodSignature method, Path packageMapPath) {
-        String packageName = method.getDeclClassType().getPackageName().getName();
-        // The ignored prefixes are either loaded from a txt file or are hardcoded (for basic jdk methods). The
-        // package name is also added to the ignored prefixes.
-        for (String ignore : ignoredPrefixes) {
-            if (packageName.startsWith(ignore)) return false;
+        private static double standardDeviation(double[] values, int n, double mean) {
+            double squares = 0;
+            for (int i = 0; i < n; i++) {
+                squares += (values[i] - mean) * (values[i] - mean);
+            }
+            return Math.sqrt(squares / (n - 1));
         }
-        return PackageMatcher.containsPackage(packageName, packageMapPath);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package io.github.chains_project.coolname.api_finder;
 
+import io.github.chains_project.coolname.api_finder.model.MethodId;
+import io.github.chains_project.coolname.api_finder.utils.BoundedCache;
+import io.github.chains_project.coolname.api_finder.utils.CacheStats;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import io.github.chains_project.coolname.api_finder.utils.SpoonMethodFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +22,8 @@ public class RecordCounter {
 
     private static final Logger log = LoggerFactory.getLogger(RecordCounter.class);
     // Cache for method condition counts to avoid re-parsing
-    private static final Map<String, Integer> conditionCache = new HashMap<>();
+    private static final SessionLocal<BoundedCache<MethodId, Integer>> conditionCache =
+            SessionLocal.withInitial(() -> BoundedCache.bySize("conditions", 200_000));
 
     /**
      * Count total conditions across all methods in a path.
@@ -52,26 +57,26 @@ public class RecordCounter {
      * @return Count of control flow conditions in the method
      */
     private static int countConditionsInMethod(MethodSignature methodSig, String sourceRootPath) {
-        String cacheKey = methodSig.toString();
         // Check cache first
-        if (conditionCache.containsKey(cacheKey)) {
-            return conditionCache.get(cacheKey);
-        }
+        return conditionCache.get().get(MethodId.of(methodSig),
+                id -> loadConditionsInMethod(id, sourceRootPath));
+    }
+
+    private static int loadConditionsInMethod(MethodId cacheKey, String sourceRootPath) {
+        MethodSignature methodSig = cacheKey.signature();
         int count = 0;
         try {
             if (sourceRootPath == null) {
                 log.debug("No source root provided, cannot count conditions for {}", cacheKey);
-                conditionCache.put(cacheKey, 0);
                 return 0;
             }
             CtModel spoonModel = SourceCodeExtractor.getModel(sourceRootPath);
-            String className = methodSig.getDeclClassType().getFullyQualifiedName();
+            String className = cacheKey.className();
             String methodName = methodSig.getName();
             // Find the type using shared helper
             CtType<?> ctType = SpoonMethodFinder.findTypeCached(spoonModel, className);
             if (ctType == null) {
                 log.debug("Type not found: {}", className);
-                conditionCache.put(cacheKey, 0);
                 return 0;
             }
             // Handle special method names from bytecode
@@ -90,8 +95,6 @@ public class RecordCounter {
         } catch (Exception e) {
             log.warn("Error counting conditions for {}: {}", methodSig, e.getMessage());
         }
-        // Cache the result
-        conditionCache.put(cacheKey, count);
         return count;
     }
 
@@ -164,14 +167,14 @@ public class RecordCounter {
      * Useful when processing multiple projects or for testing.
      */
     public static void clearCache() {
-        conditionCache.clear();
+        conditionCache.get().clear();
         log.debug("Cleared condition cache");
     }
 
     /**
      * Get cache statistics for monitoring/debugging.
      */
-    public static String getCacheStats() {
-        return String.format("Condition cache: %d entries", conditionCache.size());
+    public static CacheStats getCacheStats() {
+        return conditionCache.get().stats();
     }
 }
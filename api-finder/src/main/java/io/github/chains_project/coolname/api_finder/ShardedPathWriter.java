@@ -0,0 +1,156 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.chains_project.coolname.api_finder.model.FullMethodsPathData;
+import io.github.chains_project.coolname.api_finder.model.ShardIndex;
+import io.github.chains_project.coolname.api_finder.utils.PackageMatcher;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Writes the full methods report as newline-delimited JSON into a fixed number of shards, one record per line, so that
+ * several generation workers can each stream their own shard instead of parsing the whole report.
+ * <p>
+ * Records are assigned to shards by a stable hash of the entry point or of the third-party dependency, so all paths of
+ * an entry point (or dependency) end up in the same shard. The hash is FNV-1a (64 bit) of the UTF-8 bytes of the key,
+ * modulo the number of shards, which is easy to compute in other languages too. Within a shard, the records keep the
+ * order in which they are written. On close, an index file lists the shards with their number of records, and for
+ * dependency sharding the dependencies of each shard.
+ */
+class ShardedPathWriter implements PathWriter.RecordWriter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // Records of third-party methods whose package is not in the package map
+    private static final String UNKNOWN_DEPENDENCY = "unknown";
+
+    /**
+     * What the records are sharded by.
+     */
+    enum ShardBy {
+        ENTRY_POINT, DEPENDENCY
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper().disable(SerializationFeature.INDENT_OUTPUT);
+    private final File reportFile;
+    private final ShardBy shardBy;
+    private final Path packageMapPath;
+    private final BufferedWriter[] writers;
+    private final int[] records;
+    private final List<SortedSet<String>> dependencies = new ArrayList<>();
+    // The dependency of each third-party method, the lookup walks up the packages
+    private final Map<String, String> dependencyByMethod = new HashMap<>();
+    private int written;
+
+    /**
+     * @param reportFile     the full methods report, the shards and the index are written next to it
+     * @param shards         the number of shards
+     * @param shardBy        what the records are sharded by
+     * @param packageMapPath the package map, used to find the dependency of a third-party method
+     */
+    ShardedPathWriter(File reportFile, int shards, ShardBy shardBy, Path packageMapPath) {
+        this.reportFile = reportFile;
+        this.shardBy = shardBy;
+        this.packageMapPath = packageMapPath;
+        this.writers = new BufferedWriter[shards];
+        this.records = new int[shards];
+        for (int i = 0; i < shards; i++) {
+            dependencies.add(new TreeSet<>());
+        }
+    }
+
+    @Override
+    public void write(FullMethodsPathData data) throws IOException {
+        String key = shardBy == ShardBy.DEPENDENCY ? dependencyOf(data.thirdPartyMethod()) : data.entryPoint();
+        int shard = shardOf(key, writers.length);
+        if (writers[shard] == null) {
+            writers[shard] = Files.newBufferedWriter(shardFile(shard).toPath(), StandardCharsets.UTF_8);
+        }
+        writers[shard].write(mapper.writeValueAsString(data));
+        writers[shard].newLine();
+        records[shard]++;
+        if (shardBy == ShardBy.DEPENDENCY) {
+            dependencies.get(shard).add(key);
+        }
+        written++;
+    }
+
+    @Override
+    public int written() {
+        return written;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (BufferedWriter writer : writers) {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * Close the shards and write the index. Shards without records are written as empty files, so that every
+     * shard in the index exists.
+     */
+    @Override
+    public void close() throws IOException {
+        List<ShardIndex.Shard> shards = new ArrayList<>();
+        for (int i = 0; i < writers.length; i++) {
+            if (writers[i] != null) {
+                writers[i].close();
+            } else {
+                Files.writeString(shardFile(i).toPath(), "");
+            }
+            shards.add(new ShardIndex.Shard(shardFile(i).getName(), records[i],
+                    shardBy == ShardBy.DEPENDENCY ? List.copyOf(dependencies.get(i)) : null));
+        }
+        ShardIndex index = new ShardIndex(shardBy.name(), "fnv1a64", writers.length, written, shards);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(indexFile(reportFile), index);
+    }
+
+    static File indexFile(File reportFile) {
+        return new File(reportFile.getPath().replace(".json", ".index.json"));
+    }
+
+    private File shardFile(int shard) {
+        return new File(reportFile.getPath().replace(".json", ".shard-" + shard + ".ndjson"));
+    }
+
+    /**
+     * The shard of a key: FNV-1a of the UTF-8 bytes, modulo the number of shards.
+     */
+    static int shardOf(String key, int shards) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return (int) Long.remainderUnsigned(hash, shards);
+    }
+
+    /**
+     * The dependency (groupId:artifactId:version) of a third-party method given by its filtered name, e.g.
+     * org.example.lib.Store.get. Nested classes make the package ambiguous, so the longest prefix that is a package in
+     * the package map wins.
+     */
+    private String dependencyOf(String thirdPartyMethod) {
+        return dependencyByMethod.computeIfAbsent(thirdPartyMethod, name -> {
+            for (int end = name.lastIndexOf('.'); end > 0; end = name.lastIndexOf('.', end - 1)) {
+                String packageName = name.substring(0, end);
+                if (PackageMatcher.containsPackage(packageName, packageMapPath)) {
+                    String dependency = PackageMatcher.getDependencyName(packageName, packageMapPath);
+                    return dependency != null ? dependency : UNKNOWN_DEPENDENCY;
+                }
+            }
+            return UNKNOWN_DEPENDENCY;
+        });
+    }
+}
@@ -1,6 +1,12 @@
 package io.github.chains_project.coolname.api_finder;
 
 import io.github.chains_project.coolname.api_finder.model.ClassMemberData;
+import io.github.chains_project.coolname.api_finder.model.MethodId;
+import io.github.chains_project.coolname.api_finder.utils.BoundedCache;
+import io.github.chains_project.coolname.api_finder.utils.CacheStats;
+import io.github.chains_project.coolname.api_finder.utils.Metrics;
+import io.github.chains_project.coolname.api_finder.utils.PhaseRecorder;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import io.github.chains_project.coolname.api_finder.utils.SpoonMethodFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +18,9 @@ import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration.CtType;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -26,51 +35,83 @@ import java.util.stream.Collectors;
 public class SourceCodeExtractor {
 
     private static final Logger log = LoggerFactory.getLogger(SourceCodeExtractor.class);
-    // Method cache: maps method signature string to extracted source code
-    private static final Map<String, String> methodCache = new HashMap<>();
-    // Type cache: maps class name to CtType for faster lookups
-    private static final Map<String, CtType<?>> typeCache = new HashMap<>();
-    protected static String currentSourceRoot;
-    // Model cache
-    private static CtModel model;
+    // The model and the method cache of each session
+    private static final SessionLocal<ModelCache> cache = SessionLocal.withInitial(ModelCache::new);
 
     /**
      * Initialize or retrieve the Spoon model for the given source root.
-     * This is cached to avoid re-parsing the entire source tree multiple times.
+     * This is cached to avoid re-parsing the entire source tree multiple times. If the model of this source root is
+     * being built in the background, wait for it.
      */
     private static CtModel getOrCreateModel(String sourceRootPath) {
-        // Cache the model if we are using the same source root
-        if (model != null && sourceRootPath.equals(currentSourceRoot)) {
-            return model;
+        ModelCache c = cache.get();
+        synchronized (c) {
+            // Cache the model if we are using the same source root
+            if (c.model != null && sourceRootPath.equals(c.currentSourceRoot)) {
+                return c.model;
+            }
+            CompletableFuture<CtModel> pending = c.pendingModel;
+            c.pendingModel = null;
+            try {
+                CtModel built;
+                if (pending != null && sourceRootPath.equals(c.pendingSourceRoot)) {
+                    log.info("Waiting for the Spoon model of {} to be built", sourceRootPath);
+                    built = Metrics.time("spoonModelWait", pending::join);
+                } else {
+                    built = buildModel(sourceRootPath);
+                }
+                c.model = built;
+                c.currentSourceRoot = sourceRootPath;
+                // Clear caches when we build a new model
+                c.methodCache.clear();
+                log.info("Spoon model built successfully with {} types", built.getAllTypes().size());
+                return built;
+            } catch (Exception e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Error building Spoon model: {}", cause.getMessage(), cause);
+                c.model = null;
+                c.currentSourceRoot = null;
+                throw new RuntimeException("Failed to build Spoon model", cause);
+            }
         }
-        log.info("Building Spoon model from source root: {}", sourceRootPath);
-        try {
-            MavenLauncher launcher = new MavenLauncher(sourceRootPath,
-                    MavenLauncher.SOURCE_TYPE.APP_SOURCE);
-            // Configure Spoon to be more lenient
-            launcher.getEnvironment().setNoClasspath(true);
-            launcher.getEnvironment().setCommentEnabled(true);
-            launcher.getEnvironment().disableConsistencyChecks();
-            model = launcher.buildModel();
-            currentSourceRoot = sourceRootPath;
-            // Clear caches when we build a new model
-            methodCache.clear();
-            typeCache.clear();
-            log.info("Spoon model built successfully with {} types", model.getAllTypes().size());
-            return model;
-        } catch (Exception e) {
-            log.error("Error building Spoon model: {}", e.getMessage(), e);
-            model = null;
-            currentSourceRoot = null;
-            throw new RuntimeException("Failed to build Spoon model", e);
+    }
+
+    /**
+     * Start building the Spoon model of the given source root on a background thread, e.g. while the call graph is
+     * built. The first extraction waits for it instead of building it again.
+     */
+    public static void buildModelInBackground(String sourceRootPath) {
+        ModelCache c = cache.get();
+        synchronized (c) {
+            if (sourceRootPath.equals(c.currentSourceRoot) && c.model != null) {
+                return;
+            }
+            c.pendingSourceRoot = sourceRootPath;
+            Function<String, CtModel> build = PhaseRecorder.worker(SourceCodeExtractor::buildModel);
+            c.pendingModel = CompletableFuture.supplyAsync(() -> build.apply(sourceRootPath), runnable -> {
+                Thread thread = new Thread(runnable, "spoon-model");
+                thread.setDaemon(true);
+                thread.start();
+            });
         }
     }
 
+    private static CtModel buildModel(String sourceRootPath) {
+        log.info("Building Spoon model from source root: {}", sourceRootPath);
+        MavenLauncher launcher = new MavenLauncher(sourceRootPath,
+                MavenLauncher.SOURCE_TYPE.APP_SOURCE);
+        // Configure Spoon to be more lenient
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.getEnvironment().setCommentEnabled(true);
+        launcher.getEnvironment().disableConsistencyChecks();
+        return Metrics.time("spoonModel", launcher::buildModel);
+    }
+
     /**
      * Get the current source root path.
      */
     public static String getCurrentSourceRoot() {
-        return currentSourceRoot;
+        return cache.get().currentSourceRoot;
     }
 
     /**
@@ -81,24 +122,21 @@ public class SourceCodeExtractor {
      * @return The source code of the method, or null if not found
      */
     public static String extractMethodFromSource(MethodSignature methodSig, String sourceRootPath) {
-        // Create a cache key from the method signature
-        String cacheKey = methodSig.toString();
-        // Check if we already extracted this method
-        if (methodCache.containsKey(cacheKey)) {
-            log.trace("Method cache hit for {}", cacheKey);
-            return methodCache.get(cacheKey);
-        }
+        // Check if we already extracted this method, the cache also keeps the methods that were not found
+        return cache.get().methodCache.get(MethodId.of(methodSig), id -> loadMethodFromSource(id, sourceRootPath));
+    }
+
+    private static String loadMethodFromSource(MethodId cacheKey, String sourceRootPath) {
+        MethodSignature methodSig = cacheKey.signature();
         try {
             CtModel spoonModel = getOrCreateModel(sourceRootPath);
             // Get the fully qualified class name
-            String className = methodSig.getDeclClassType().getFullyQualifiedName();
+            String className = cacheKey.className();
             String methodName = methodSig.getName();
             // Handle inner classes - Spoon uses $ for inner classes
             CtType<?> ctType = findTypeCached(spoonModel, className);
             if (ctType == null) {
                 log.debug("Type not found in Spoon model: {}", className);
-                // Cache the null result to avoid repeated lookups
-                methodCache.put(cacheKey, null);
                 return null;
             }
             // Handle special method names from bytecode
@@ -116,16 +154,10 @@ public class SourceCodeExtractor {
             if (sourceCode == null) {
                 log.debug("Method {} not found in type {}", methodName, className);
             }
-            // Cache the result (even if null)
-            methodCache.put(cacheKey, sourceCode);
-            if (sourceCode != null) {
-                log.trace("Cached method source for {}", cacheKey);
-            }
             return sourceCode;
         } catch (Exception e) {
             log.warn("Error extracting source code for {}: {}", methodSig, e.getMessage());
-            // Cache the null result to avoid repeated errors
-            methodCache.put(cacheKey, null);
+            // The null result is cached as well, to avoid repeated errors
             return null;
         }
     }
@@ -431,21 +463,46 @@ public class SourceCodeExtractor {
      * Useful for testing or when processing multiple projects.
      */
     public static void clearCache() {
-        model = null;
-        currentSourceRoot = null;
-        methodCache.clear();
+        ModelCache c = cache.get();
+        synchronized (c) {
+            c.model = null;
+            c.currentSourceRoot = null;
+            // A model that is still being built is left to finish and dropped
+            c.pendingModel = null;
+            c.pendingSourceRoot = null;
+            c.methodCache.clear();
+        }
         SpoonMethodFinder.clearCache();
         log.debug("Cleared all caches");
     }
 
     /**
-     * Get cache statistics for monitoring/debugging.
+     * Clear the extracted methods and types, but keep the Spoon model.
      */
-    public static String getCacheStats() {
-        return String.format("Method cache: %d entries, %s",
-                methodCache.size(), SpoonMethodFinder.getCacheStats());
+    public static void clearMethodCache() {
+        cache.get().methodCache.clear();
+        log.debug("Cleared method cache");
     }
 
+    /**
+     * Get cache statistics for monitoring/debugging.
+     */
+    public static CacheStats getCacheStats() {
+        return cache.get().methodCache.stats();
+    }
 
-
+    /**
+     * The Spoon model of a session and the methods extracted from it.
+     */
+    private static final class ModelCache {
+        // Method cache: maps method id to extracted source code, weighed by the length of the source
+        final BoundedCache<MethodId, String> methodCache = BoundedCache.byWeight("methodSource",
+                16 * 1024 * 1024, (id, source) -> source == null ? 1 : source.length());
+        volatile String currentSourceRoot;
+        // Model cache
+        CtModel model;
+        // The model that is being built in the background, if any
+        CompletableFuture<CtModel> pendingModel;
+        String pendingSourceRoot;
+    }
 }
@@ -1,6 +1,8 @@
 package io.github.chains_project.coolname.api_finder;
 
+import io.github.chains_project.coolname.api_finder.model.MethodId;
 import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sootup.core.model.SootMethod;
@@ -12,16 +14,40 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Generates test templates by replacing placeholders in the template file
  * with actual values extracted from the analysis results.
+ * <p>
+ * The template is read and split into literal text and placeholders once, every path then renders it in a single
+ * pass. Whether an entry point is static is looked up once per entry point.
  */
 public class TestTemplateGenerator {
 
     private static final Logger log = LoggerFactory.getLogger(TestTemplateGenerator.class);
     private static final String TEMPLATE_RESOURCE_PATH = "/Template.java";
+    // The instantiation of the entry point class, removed with the surrounding whitespace for static entry points
+    private static final String INSTANTIATION =
+            "\\s*EntryPointClass entryPointClass = new EntryPointClass\\(requiredClassParameters\\);\\s*";
+    // The longer placeholders come first, so that they win over the placeholders they contain
+    private static final String PLACEHOLDERS = Arrays.stream(Placeholder.values())
+            .map(placeholder -> Pattern.quote(placeholder.text))
+            .collect(Collectors.joining("|"));
+    private static final Pattern TEMPLATE_TOKENS = Pattern.compile("(" + INSTANTIATION + ")|" + PLACEHOLDERS);
+    private static final Pattern PLACEHOLDER_TOKENS = Pattern.compile(PLACEHOLDERS);
+    // The modifiers belong to the view of the project of a session, the parsed template is the same for all sessions
+    private static final SessionLocal<Map<MethodId, Boolean>> staticCache =
+            SessionLocal.withInitial(ConcurrentHashMap::new);
+    private static volatile List<Segment> template;
 
     /**
      * Generate a test template for a given third-party path.
@@ -33,7 +59,7 @@ public class TestTemplateGenerator {
     public static String generateTestTemplate(ThirdPartyPath thirdPartyPath, JavaView view) {
         try {
             // We have a template in the resources folder. It has basic boilerplate code with placeholders for a JUnit test.
-            String template = readTemplateFile();
+            List<Segment> segments = getTemplate();
             MethodSignature entryPoint = thirdPartyPath.entryPoint();
             String entryPointClassName = extractSimpleClassName(entryPoint.getDeclClassType().getFullyQualifiedName());
             String entryPointPackage = extractPackageName(entryPoint.getDeclClassType().getFullyQualifiedName());
@@ -45,48 +71,109 @@ public class TestTemplateGenerator {
             // Check if the entry point method is static
             boolean isStatic = isMethodStatic(entryPoint, view);
             // Here, we replace placeholders in the template.
-            template = template.replace("packagename", entryPointPackage);
-            template = template.replace("TestNameTest", testClassName);
-            template = template.replace("testname()", testMethodName + "()");
-            if (isStatic) {
-                // For static methods, we don't need to instantiate the class, remove the instantiation line
-                template = template.replaceAll("\\s*EntryPointClass entryPointClass = " +
-                        "new EntryPointClass\\(requiredClassParameters\\);\\s*", "");
-                // Replace method call with static call
-                template = template.replace("entryPointClass.entryPointMethod", entryPointClassName +
-                        "." + entryPointMethodName);
-            } else {
-                // For non-static methods, use instance-based approach
-                template = template.replace("EntryPointClass entryPointClass", entryPointClassName +
-                        " " + entryPointVarName);
-                template = template.replace("EntryPointClass", entryPointClassName);
-                template = template.replace("entryPointClass.entryPointMethod", entryPointVarName +
-                        "." + entryPointMethodName);
+            TemplateValues values = new TemplateValues(entryPointPackage, testClassName, testMethodName,
+                    entryPointClassName, entryPointVarName, entryPointMethodName, isStatic);
+            StringBuilder out = new StringBuilder(512);
+            for (Segment segment : segments) {
+                segment.render(out, values);
             }
             log.debug("Generated test template for {}", entryPoint);
-            return template;
+            return out.toString();
         } catch (Exception e) {
             log.error("Failed to generate test template:  {}", e.getMessage(), e);
             return "// Error generating test template: " + e.getMessage();
         }
     }
 
+    /**
+     * Forget the looked up modifiers, they belong to the view of the current project.
+     */
+    public static void clearCache() {
+        staticCache.get().clear();
+    }
+
+    /**
+     * Look up the modifiers of the given methods now, so that the templates can be generated without the view.
+     */
+    public static void captureModifiers(Collection<MethodSignature> methods, JavaView view) {
+        for (MethodSignature method : methods) {
+            isMethodStatic(method, view);
+        }
+    }
+
     /**
      * Check if a method is static by looking up its modifiers in the JavaView.
+     * The result is cached per method, all paths of an entry point need the same answer. Without a view, only the
+     * cached modifiers are known, other methods are taken as not static.
      *
      * @param methodSig The method signature to check
      * @param view      The JavaView containing the method
      * @return true if the method is static, false otherwise
      */
     private static boolean isMethodStatic(MethodSignature methodSig, JavaView view) {
+        MethodId id = MethodId.of(methodSig);
+        Boolean cached = staticCache.get().get(id);
+        if (cached != null) {
+            return cached;
+        }
+        if (view == null) {
+            log.warn("The modifiers of {} were not captured, taking it as not static", methodSig);
+            staticCache.get().put(id, false);
+            return false;
+        }
+        boolean isStatic;
         try {
-            return view.getMethod(methodSig)
+            isStatic = view.getMethod(methodSig)
                     .map(SootMethod::isStatic)
                     .orElse(false);
         } catch (Exception e) {
             log.warn("Could not determine if method is static: {}", methodSig, e);
-            return false;
+            isStatic = false;
         }
+        staticCache.get().put(id, isStatic);
+        return isStatic;
+    }
+
+    /**
+     * The parsed template, read from the resources on first use.
+     */
+    private static List<Segment> getTemplate() throws IOException {
+        List<Segment> segments = template;
+        if (segments == null) {
+            synchronized (TestTemplateGenerator.class) {
+                segments = template;
+                if (segments == null) {
+                    segments = parse(readTemplateFile(), TEMPLATE_TOKENS);
+                    template = segments;
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Split the template into literal text and placeholders. The instantiation is kept as a nested template, so that
+     * it can be left out as a whole.
+     */
+    private static List<Segment> parse(String text, Pattern tokens) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = tokens.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            if (matcher.start() > last) {
+                segments.add(new Literal(text.substring(last, matcher.start())));
+            }
+            if (tokens == TEMPLATE_TOKENS && matcher.group(1) != null) {
+                segments.add(new Instantiation(parse(matcher.group(1), PLACEHOLDER_TOKENS)));
+            } else {
+                segments.add(Placeholder.of(matcher.group()));
+            }
+            last = matcher.end();
+        }
+        if (last < text.length()) {
+            segments.add(new Literal(text.substring(last)));
+        }
+        return List.copyOf(segments);
     }
 
     /**
@@ -106,6 +193,94 @@ public class TestTemplateGenerator {
         }
     }
 
+    private record TemplateValues(String packageName, String testClassName, String testMethodName,
+                                  String className, String varName, String methodName, boolean isStatic) {
+    }
+
+    private interface Segment {
+        void render(StringBuilder out, TemplateValues values);
+    }
+
+    private record Literal(String text) implements Segment {
+        @Override
+        public void render(StringBuilder out, TemplateValues values) {
+            out.append(text);
+        }
+    }
+
+    private record Instantiation(List<Segment> segments) implements Segment {
+        @Override
+        public void render(StringBuilder out, TemplateValues values) {
+            // For static methods, we don't need to instantiate the class
+            if (values.isStatic()) {
+                return;
+            }
+            for (Segment segment : segments) {
+                segment.render(out, values);
+            }
+        }
+    }
+
+    private enum Placeholder implements Segment {
+        ENTRY_POINT_CALL("entryPointClass.entryPointMethod") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                // Static methods are called on the class, the others on the instance
+                out.append(values.isStatic() ? values.className() : values.varName())
+                        .append('.').append(values.methodName());
+            }
+        },
+        DECLARATION("EntryPointClass entryPointClass") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                if (values.isStatic()) {
+                    out.append(text);
+                } else {
+                    out.append(values.className()).append(' ').append(values.varName());
+                }
+            }
+        },
+        CLASS("EntryPointClass") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                out.append(values.isStatic() ? text : values.className());
+            }
+        },
+        TEST_CLASS("TestNameTest") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                out.append(values.testClassName());
+            }
+        },
+        TEST_METHOD("testname()") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                out.append(values.testMethodName()).append("()");
+            }
+        },
+        PACKAGE("packagename") {
+            @Override
+            public void render(StringBuilder out, TemplateValues values) {
+                out.append(values.packageName());
+            }
+        };
+
+        final String text;
+
+        Placeholder(String text) {
+            this.text = text;
+        }
+
+        static Placeholder of(String text) {
+            for (Placeholder placeholder : values()) {
+                if (placeholder.text.equals(text)) {
+                    return placeholder;
+                }
+            }
+            throw new IllegalArgumentException("Unknown placeholder: " + text);
+        }
+    }
+
     /**
      * Extract the simple class name from a fully qualified name.
      */
@@ -3,7 +3,16 @@ package io.github.chains_project.coolname.api_finder.model;
 import java.util.List;
 
 /**
- * Main analysis result containing all discovered third-party paths
+ * Main analysis result containing all discovered third-party paths, stored in a shared prefix tree, and the
+ * reachability index of the call graph if it was built (null otherwise)
  */
-public record AnalysisResult(List<ThirdPartyPath> thirdPartyPaths) {
+public record AnalysisResult(PathTree pathTree, ReachabilityIndex reachability) {
+
+    public AnalysisResult(PathTree pathTree) {
+        this(pathTree, null);
+    }
+
+    public List<ThirdPartyPath> thirdPartyPaths() {
+        return pathTree.paths();
+    }
 }
@@ -0,0 +1,18 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * One project in a batch manifest. The fields mirror the options of the process command.
+ * Relative paths are resolved against the directory of the manifest file.
+ */
+public record BatchEntry(
+        String name,
+        String jarPath,
+        String packageName,
+        String packageMap,
+        String sourceCodePath,
+        List<String> jacocoFiles,
+        String reportPrefix
+) {
+}
@@ -0,0 +1,9 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * A batch manifest listing all projects to analyze within a single JVM.
+ */
+public record BatchManifest(List<BatchEntry> projects) {
+}
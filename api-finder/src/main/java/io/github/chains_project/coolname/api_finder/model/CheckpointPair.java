@@ -0,0 +1,15 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * A completed (direct caller, third-party method) pair in a checkpoint: the paths found for it, as full SootUp
+ * signatures, and the path statistics recorded while searching them.
+ */
+public record CheckpointPair(
+        String directCaller,
+        String thirdPartyMethod,
+        List<List<String>> paths,
+        List<PathStats> stats
+) {
+}
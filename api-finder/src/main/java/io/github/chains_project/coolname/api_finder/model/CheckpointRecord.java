@@ -0,0 +1,10 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+/**
+ * An extracted path in a checkpoint, by its index in the analysis result. The record is null if the path was skipped.
+ */
+public record CheckpointRecord(
+        int path,
+        FullMethodsPathData record
+) {
+}
@@ -0,0 +1,33 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The analysis a checkpoint belongs to. The completed pairs are only resumed for the same jar and package map (by path,
+ * size and modification time), the same package and the same coverage report directories. The extracted records
+ * also depend on the source root, they are only reused for the same one. Directories are compared by path, not by
+ * their content.
+ */
+public record CheckpointState(
+        String jarPath,
+        long jarSize,
+        long jarLastModified,
+        String packageName,
+        String packageMapPath,
+        long packageMapSize,
+        long packageMapLastModified,
+        List<String> jacocoHtmlDirs,
+        String sourceRootPath
+) {
+
+    /**
+     * Whether the path search of the other state finds the same pairs and paths, the sources aside.
+     */
+    public boolean samePaths(CheckpointState other) {
+        return jarPath.equals(other.jarPath) && jarSize == other.jarSize && jarLastModified == other.jarLastModified
+                && packageName.equals(other.packageName) && Objects.equals(packageMapPath, other.packageMapPath)
+                && packageMapSize == other.packageMapSize && packageMapLastModified == other.packageMapLastModified
+                && Objects.equals(jacocoHtmlDirs, other.jacocoHtmlDirs);
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * A path of the dictionary-encoded full methods report. Same as {@link FullMethodsPathData}, but the method sources,
+ * class members and imports are ids into the tables of the {@link DictionaryReport}.
+ */
+public record DictionaryPathData(
+        String entryPoint,
+        String thirdPartyMethod,
+        List<String> path,
+        int[] methodSources,
+        int classMembers,
+        int imports,
+        String testTemplate,
+        int conditionCount
+) {
+}
@@ -0,0 +1,15 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * The dictionary-encoded full methods report. Each method body, class member block and import list is written once in
+ * its table, and the paths refer to them by their index.
+ */
+public record DictionaryReport(
+        List<String> methodSources,
+        List<ClassMemberData> classMembers,
+        List<List<String>> imports,
+        List<DictionaryPathData> fullMethodsPaths
+) {
+}
@@ -0,0 +1,142 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import io.github.chains_project.coolname.api_finder.utils.SessionLocal;
+import sootup.core.signatures.MethodSignature;
+import sootup.core.types.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The canonical identity of a method, created once per method signature. It carries all the string forms the
+ * subsystems need, so that they are computed once instead of on every cache lookup, path element and log line:
+ * the full SootUp signature, the filtered name used in the reports, the declaring class used to look the type up in
+ * the Spoon model, and the names used to look the method up in the JaCoCo reports.
+ * <p>
+ * Ids are interned per {@link io.github.chains_project.coolname.api_finder.utils.Session}, so caches keyed on them
+ * compare by reference in the common case and never rebuild the hash.
+ */
+public final class MethodId {
+
+    private static final SessionLocal<Map<MethodSignature, MethodId>> interned =
+            SessionLocal.withInitial(ConcurrentHashMap::new);
+    // $ followed by digits (e.g., $Array1234) is removed
+    private static final Pattern ANONYMOUS_SUFFIX = Pattern.compile("\\$\\d+");
+    // $ followed by a letter (e.g. Java$ArrayInitializer) becomes a dot
+    private static final Pattern NESTED_SEPARATOR = Pattern.compile("\\$(?=[A-Za-z])");
+
+    private final MethodSignature signature;
+    private final String fullName;
+    private final String filteredName;
+    private final String className;
+    private final String jacocoName;
+    private final String jacocoNameWithParameters;
+    private final String jacocoReportFile;
+    private final int hash;
+
+    private MethodId(MethodSignature signature) {
+        this.signature = signature;
+        this.fullName = signature.toString();
+        this.className = signature.getDeclClassType().getFullyQualifiedName();
+        this.filteredName = filterName(className) + "." + filterName(signature.getName());
+        this.jacocoName = className + "." + signature.getName();
+        this.jacocoNameWithParameters = jacocoName + "(" + signature.getParameterTypes().stream()
+                .map(Type::toString)
+                .collect(Collectors.joining(", ")) + ")";
+        // JaCoCo writes one HTML file per source file into a folder per package, e.g. org.example/Foo.java.html
+        int lastDot = className.lastIndexOf('.');
+        this.jacocoReportFile = lastDot < 0 ? null
+                : className.substring(0, lastDot) + "/" + className.substring(lastDot + 1) + ".java.html";
+        this.hash = signature.hashCode();
+    }
+
+    /**
+     * The canonical id of the given method.
+     */
+    public static MethodId of(MethodSignature signature) {
+        return interned.get().computeIfAbsent(signature, MethodId::new);
+    }
+
+    /**
+     * Forget all ids, e.g. before analyzing another project.
+     */
+    public static void clear() {
+        interned.get().clear();
+    }
+
+    public MethodSignature signature() {
+        return signature;
+    }
+
+    /**
+     * The full SootUp signature, e.g. {@code <org.example.Foo: void bar(int)>}.
+     */
+    public String fullName() {
+        return fullName;
+    }
+
+    /**
+     * The name used in the reports, e.g. org.example.Foo.Inner.bar for a method of Foo$Inner.
+     */
+    public String filteredName() {
+        return filteredName;
+    }
+
+    /**
+     * The fully qualified name of the declaring class, as used for the type lookups in the Spoon model.
+     */
+    public String className() {
+        return className;
+    }
+
+    /**
+     * The class and method name, as searched in the covered lines of the JaCoCo reports.
+     */
+    public String jacocoName() {
+        return jacocoName;
+    }
+
+    /**
+     * The class and method name with the parameter types, as logged in coverage.json.
+     */
+    public String jacocoNameWithParameters() {
+        return jacocoNameWithParameters;
+    }
+
+    /**
+     * The JaCoCo HTML report of the declaring class relative to the report root, or null for the default package.
+     */
+    public String jacocoReportFile() {
+        return jacocoReportFile;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        // Ids of the same method are the same object, unless the interned ids were cleared in between or the ids
+        // come from different sessions
+        return o instanceof MethodId other && hash == other.hash && signature.equals(other.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return fullName;
+    }
+
+    private static String filterName(String name) {
+        if (name.indexOf('$') < 0) {
+            return name;
+        }
+        name = ANONYMOUS_SUFFIX.matcher(name).replaceAll("");
+        return NESTED_SEPARATOR.matcher(name).replaceAll(".");
+    }
+}
@@ -1,19 +1,27 @@
 package io.github.chains_project.coolname.api_finder.model;
 
 /**
- * Statistics about paths from a public method to a third-party method
+ * Statistics about paths from a public method to a third-party method.
+ * Truncated statistics are incomplete, the search ran out of its budget before it could visit all paths.
  */
 public record PathStats(
         String publicMethod,
         String thirdPartyMethod,
         int totalPaths,
         int shortestPathLength,
-        int longestPathLength
+        int longestPathLength,
+        boolean truncated
 ) {
+
+    public PathStats asTruncated() {
+        return new PathStats(publicMethod, thirdPartyMethod, totalPaths, shortestPathLength, longestPathLength, true);
+    }
+
     @Override
     public String toString() {
-        return String.format("From %s to %s - Paths: %d, Shortest: %d, Longest: %d",
-                publicMethod, thirdPartyMethod, totalPaths, shortestPathLength, longestPathLength);
+        return String.format("From %s to %s - Paths: %d, Shortest: %d, Longest: %d%s",
+                publicMethod, thirdPartyMethod, totalPaths, shortestPathLength, longestPathLength,
+                truncated ? " (truncated)" : "");
     }
 }
 
@@ -0,0 +1,186 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import sootup.core.signatures.MethodSignature;
+
+import java.util.*;
+
+/**
+ * Stores the paths of an analysis in a prefix tree over a method table, so that paths sharing a prefix (e.g. all
+ * paths from the same entry point through the same helper) share the nodes of that prefix. Memory scales with the
+ * number of distinct prefixes instead of the total length of all paths.
+ * <p>
+ * Nodes are plain ints: the method of a node is an index into the method table, and every node knows its parent and
+ * depth. The children of a node are a linked list of siblings, roots are indexed by their method. A path is
+ * identified by its last node, see {@link ThirdPartyPath}. Nodes are created parents first, so iterating the nodes
+ * in order visits every shared prefix exactly once before the nodes below it.
+ */
+public final class PathTree {
+
+    private static final int NONE = -1;
+
+    // Method table
+    private final List<MethodId> methods = new ArrayList<>();
+    private final Map<MethodId, Integer> methodIndex = new HashMap<>();
+    // Nodes
+    private int[] nodeMethod = new int[64];
+    private int[] parent = new int[64];
+    private int[] depth = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int nodeCount;
+    private final Map<Integer, Integer> rootsByMethod = new HashMap<>();
+    // The last node of every added path, in the order they were added
+    private int[] pathEnds = new int[16];
+    private int pathCount;
+
+    /**
+     * Add a path and return it. Adding the same path twice adds it twice, but does not create any new nodes.
+     */
+    public ThirdPartyPath add(List<MethodSignature> path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("A path needs at least one method");
+        }
+        int node = NONE;
+        for (MethodSignature method : path) {
+            node = child(node, methodIndex(method));
+        }
+        if (pathCount == pathEnds.length) {
+            pathEnds = Arrays.copyOf(pathEnds, pathCount * 2);
+        }
+        pathEnds[pathCount++] = node;
+        return new ThirdPartyPath(this, node);
+    }
+
+    /**
+     * All paths in the order they were added.
+     */
+    public List<ThirdPartyPath> paths() {
+        return new AbstractList<>() {
+            @Override
+            public ThirdPartyPath get(int index) {
+                Objects.checkIndex(index, pathCount);
+                return new ThirdPartyPath(PathTree.this, pathEnds[index]);
+            }
+
+            @Override
+            public int size() {
+                return pathCount;
+            }
+        };
+    }
+
+    /**
+     * The number of paths.
+     */
+    public int size() {
+        return pathCount;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int methodCount() {
+        return methods.size();
+    }
+
+    public MethodSignature method(int node) {
+        return methodId(node).signature();
+    }
+
+    public MethodId methodId(int node) {
+        return methods.get(nodeMethod[Objects.checkIndex(node, nodeCount)]);
+    }
+
+    /**
+     * The parent of a node, or -1 for the first method of a path.
+     */
+    public int parent(int node) {
+        return parent[Objects.checkIndex(node, nodeCount)];
+    }
+
+    /**
+     * The number of methods from the first method of the path to the node, both included.
+     */
+    public int depth(int node) {
+        return depth[Objects.checkIndex(node, nodeCount)];
+    }
+
+    /**
+     * The first node of the path that ends in the given node.
+     */
+    public int root(int node) {
+        while (parent(node) != NONE) {
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * The methods from the first method of the path to the node, both included. Returns a new list.
+     */
+    public List<MethodSignature> path(int node) {
+        if (node == NONE) {
+            return new ArrayList<>();
+        }
+        MethodSignature[] methodsOnPath = new MethodSignature[depth(node)];
+        for (int current = node; current != NONE; current = parent[current]) {
+            methodsOnPath[depth[current] - 1] = methods.get(nodeMethod[current]).signature();
+        }
+        return new ArrayList<>(Arrays.asList(methodsOnPath));
+    }
+
+    private int methodIndex(MethodSignature method) {
+        MethodId id = MethodId.of(method);
+        Integer index = methodIndex.get(id);
+        if (index == null) {
+            index = methods.size();
+            methods.add(id);
+            methodIndex.put(id, index);
+        }
+        return index;
+    }
+
+    /**
+     * Find the child of the given node (or the root if the node is -1) with the given method, or create it.
+     */
+    private int child(int node, int method) {
+        if (node == NONE) {
+            Integer root = rootsByMethod.get(method);
+            if (root != null) {
+                return root;
+            }
+            int created = newNode(NONE, method);
+            rootsByMethod.put(method, created);
+            return created;
+        }
+        // Most nodes have few children, so a linear scan over the siblings is fine
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (nodeMethod[child] == method) {
+                return child;
+            }
+        }
+        int created = newNode(node, method);
+        nextSibling[created] = firstChild[node];
+        firstChild[node] = created;
+        return created;
+    }
+
+    private int newNode(int parentNode, int method) {
+        if (nodeCount == nodeMethod.length) {
+            int capacity = nodeCount * 2;
+            nodeMethod = Arrays.copyOf(nodeMethod, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+        }
+        int node = nodeCount++;
+        nodeMethod[node] = method;
+        parent[node] = parentNode;
+        depth[node] = parentNode == NONE ? 1 : depth[parentNode] + 1;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        return node;
+    }
+}
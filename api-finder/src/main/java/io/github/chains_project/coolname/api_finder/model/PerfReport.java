@@ -0,0 +1,14 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * Machine-readable result of a perf run, which can be stored and used as the baseline of a later run.
+ */
+public record PerfReport(
+        String javaVersion,
+        int availableProcessors,
+        long maxHeapBytes,
+        List<ProjectPerf> projects
+) {
+}
@@ -0,0 +1,22 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.Map;
+
+/**
+ * Resource usage of one phase of an analysis run.
+ * The allocated bytes are the ones allocated by the analysis thread during the phase. The peak heap is the sum of the
+ * peaks of all heap pools during the phase, so it is an upper bound. The retained heap is the heap still in use after
+ * the phase.
+ * The counters are the item counts, cache hits and step timings that changed during the phase.
+ */
+public record PhaseMetrics(
+        String phase,
+        long wallMillis,
+        long cpuMillis,
+        long gcMillis,
+        long allocatedBytes,
+        long peakHeapBytes,
+        long retainedHeapBytes,
+        Map<String, Long> counters
+) {
+}
@@ -0,0 +1,21 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+/**
+ * The progress of a long loop of an analysis run, as written to the status file: the items done so far, the average
+ * throughput since the loop started, the estimated time left, and the heap in use when the status was taken.
+ * The ETA is -1 as long as no item is done.
+ */
+public record ProgressStatus(
+        String task,
+        boolean finished,
+        long done,
+        long total,
+        long remaining,
+        double itemsPerSecond,
+        long etaSeconds,
+        long elapsedSeconds,
+        long usedHeapBytes,
+        long maxHeapBytes,
+        String updatedAt
+) {
+}
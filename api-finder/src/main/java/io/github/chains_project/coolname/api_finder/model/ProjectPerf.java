@@ -0,0 +1,13 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import java.util.List;
+
+/**
+ * The per-phase measurements of one project in a performance report.
+ */
+public record ProjectPerf(
+        String name,
+        int repetitions,
+        List<PhaseMetrics> phases
+) {
+}
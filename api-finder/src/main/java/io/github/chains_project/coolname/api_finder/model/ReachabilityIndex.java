@@ -0,0 +1,337 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import sootup.callgraph.CallGraph;
+import sootup.core.signatures.MethodSignature;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Which third-party methods each entry point can reach, and which entry points can reach each third-party method,
+ * without passing through another entry point. The same reachability the path search uses, but computed once for all
+ * pairs, so that questions such as "which entry points reach any org.bouncycastle API" are set lookups instead of graph
+ * traversals. Only the budgets of the search are not applied, an entry point may reach a method it has no path to in
+ * the report because its search ran out.
+ * <p>
+ * An entry point reaches a third-party method if there is a call path from the entry point to it whose intermediate
+ * methods are all project methods and, except for the direct caller of the third-party method, not entry points, and
+ * whose last call is searched, i.e. not covered by the tests. As in the search, which goes backwards from the direct
+ * caller, the direct caller itself is not counted, so an entry point does not reach the methods it calls directly
+ * through that call alone. The intermediate methods are condensed into their strongly connected components, which
+ * form a DAG, and every component is labelled with the bit set of the third-party methods it reaches, successors
+ * first. An entry point reaches what the entry points it calls call directly, and what the components it calls reach.
+ * <p>
+ * Methods are identified by their filtered names, as in the reports, so the overloads of a method share one entry.
+ */
+public final class ReachabilityIndex {
+
+    private final List<String> entryPoints;
+    private final List<String> thirdPartyMethods;
+    private final Map<String, Integer> entryPointIds = new HashMap<>();
+    private final Map<String, Integer> thirdPartyMethodIds = new HashMap<>();
+    // The third-party methods reached by each entry point
+    private final BitSet[] reached;
+    // The entry points that reach each third-party method
+    private final BitSet[] reaching;
+
+    private ReachabilityIndex(List<String> entryPoints, List<String> thirdPartyMethods, BitSet[] reached) {
+        this.entryPoints = List.copyOf(entryPoints);
+        this.thirdPartyMethods = List.copyOf(thirdPartyMethods);
+        this.reached = reached;
+        this.reaching = new BitSet[thirdPartyMethods.size()];
+        for (int t = 0; t < reaching.length; t++) {
+            reaching[t] = new BitSet(entryPoints.size());
+        }
+        for (int e = 0; e < reached.length; e++) {
+            for (int t = reached[e].nextSetBit(0); t >= 0; t = reached[e].nextSetBit(t + 1)) {
+                reaching[t].set(e);
+            }
+        }
+        for (int e = 0; e < entryPoints.size(); e++) {
+            entryPointIds.put(entryPoints.get(e), e);
+        }
+        for (int t = 0; t < thirdPartyMethods.size(); t++) {
+            thirdPartyMethodIds.put(thirdPartyMethods.get(t), t);
+        }
+    }
+
+    /**
+     * Index the given call graph.
+     *
+     * @param isThirdParty whether a method belongs to a third-party dependency
+     * @param isSearched   whether a call from a project method to a third-party method is searched, i.e. not already
+     *                     covered by the tests
+     */
+    public static ReachabilityIndex build(CallGraph cg, Set<MethodSignature> entryPoints,
+                                          Predicate<MethodSignature> isThirdParty,
+                                          BiPredicate<MethodSignature, MethodSignature> isSearched) {
+        Map<String, Integer> entryPointIds = new LinkedHashMap<>();
+        Map<String, Integer> targetIds = new LinkedHashMap<>();
+        // The project methods that are not entry points, the only ones a path may pass through
+        List<MethodSignature> interior = new ArrayList<>();
+        Map<MethodSignature, Integer> interiorIds = new HashMap<>();
+        for (MethodSignature method : cg.getMethodSignatures()) {
+            if (isThirdParty.test(method)) {
+                continue;
+            }
+            if (entryPoints.contains(method)) {
+                entryPointIds.putIfAbsent(MethodId.of(method).filteredName(), entryPointIds.size());
+            } else {
+                interiorIds.put(method, interior.size());
+                interior.add(method);
+            }
+        }
+        // The direct third-party callees and the interior callees of every interior method
+        int[][] directTargets = new int[interior.size()][];
+        int[][] successors = new int[interior.size()][];
+        for (int i = 0; i < interior.size(); i++) {
+            directTargets[i] = directTargets(cg, interior.get(i), entryPoints, isThirdParty, isSearched, targetIds,
+                    true);
+            successors[i] = interiorCallees(cg, interior.get(i), interiorIds);
+        }
+        Condensation condensation = new Condensation(successors, directTargets);
+        BitSet[] reached = new BitSet[entryPointIds.size()];
+        for (int e = 0; e < reached.length; e++) {
+            reached[e] = new BitSet();
+        }
+        for (MethodSignature entryPoint : entryPoints) {
+            if (!cg.containsMethod(entryPoint)) {
+                continue;
+            }
+            BitSet label = reached[entryPointIds.get(MethodId.of(entryPoint).filteredName())];
+            // Not its own third-party callees, the search never counts the direct caller itself
+            for (int target : directTargets(cg, entryPoint, entryPoints, isThirdParty, isSearched, targetIds,
+                    false)) {
+                label.set(target);
+            }
+            for (int successor : interiorCallees(cg, entryPoint, interiorIds)) {
+                label.or(condensation.labels.get(condensation.componentOf[successor]));
+            }
+        }
+        return new ReachabilityIndex(new ArrayList<>(entryPointIds.keySet()), new ArrayList<>(targetIds.keySet()),
+                reached);
+    }
+
+    /**
+     * Rebuild an index from its {@link #toData() data}.
+     */
+    public static ReachabilityIndex fromData(Data data) {
+        BitSet[] reached = new BitSet[data.entryPoints().size()];
+        for (int e = 0; e < reached.length; e++) {
+            reached[e] = new BitSet(data.thirdPartyMethods().size());
+            for (int target : data.reaches().get(e)) {
+                reached[e].set(target);
+            }
+        }
+        return new ReachabilityIndex(data.entryPoints(), data.thirdPartyMethods(), reached);
+    }
+
+    /**
+     * The index as plain lists, e.g. to write it as JSON.
+     */
+    public Data toData() {
+        List<int[]> reaches = new ArrayList<>(reached.length);
+        for (BitSet label : reached) {
+            reaches.add(label.stream().toArray());
+        }
+        return new Data(entryPoints, thirdPartyMethods, reaches);
+    }
+
+    /**
+     * The entry points that reach the given third-party method, or any third-party method in the given package or
+     * class when a prefix such as org.bouncycastle is given.
+     */
+    public List<String> entryPointsReaching(String thirdPartyMethodOrPrefix) {
+        BitSet result = new BitSet(entryPoints.size());
+        Integer exact = thirdPartyMethodIds.get(thirdPartyMethodOrPrefix);
+        if (exact != null) {
+            result.or(reaching[exact]);
+        } else {
+            String prefix = thirdPartyMethodOrPrefix + ".";
+            for (int t = 0; t < thirdPartyMethods.size(); t++) {
+                if (thirdPartyMethods.get(t).startsWith(prefix)) {
+                    result.or(reaching[t]);
+                }
+            }
+        }
+        return names(result, entryPoints);
+    }
+
+    /**
+     * The third-party methods the given entry point reaches, empty for an unknown entry point.
+     */
+    public List<String> thirdPartyMethodsReachedBy(String entryPoint) {
+        Integer id = entryPointIds.get(entryPoint);
+        return id == null ? List.of() : names(reached[id], thirdPartyMethods);
+    }
+
+    /**
+     * The number of third-party methods the given entry point reaches.
+     */
+    public int reachCount(String entryPoint) {
+        Integer id = entryPointIds.get(entryPoint);
+        return id == null ? 0 : reached[id].cardinality();
+    }
+
+    public List<String> entryPoints() {
+        return entryPoints;
+    }
+
+    public List<String> thirdPartyMethods() {
+        return thirdPartyMethods;
+    }
+
+    private static List<String> names(BitSet ids, List<String> names) {
+        List<String> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(names.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * The interior methods condensed into strongly connected components (iterative Tarjan), with the third-party
+     * methods each component reaches. Tarjan completes a component only after all components it calls, so the labels
+     * of the callees are known when a component is labelled.
+     */
+    private static final class Condensation {
+
+        private static final int UNVISITED = -1;
+
+        private final int[] componentOf;
+        private final List<BitSet> labels = new ArrayList<>();
+
+        Condensation(int[][] successors, int[][] directTargets) {
+            int n = successors.length;
+            componentOf = new int[n];
+            int[] index = new int[n];
+            int[] lowLink = new int[n];
+            boolean[] onStack = new boolean[n];
+            Arrays.fill(index, UNVISITED);
+            int[] stack = new int[n];
+            int stackSize = 0;
+            // The DFS as an explicit stack of methods and the position in their successors
+            int[] dfsMethod = new int[n];
+            int[] dfsEdge = new int[n];
+            int counter = 0;
+            for (int root = 0; root < n; root++) {
+                if (index[root] != UNVISITED) {
+                    continue;
+                }
+                int depth = 0;
+                dfsMethod[0] = root;
+                dfsEdge[0] = 0;
+                index[root] = lowLink[root] = counter++;
+                stack[stackSize++] = root;
+                onStack[root] = true;
+                while (depth >= 0) {
+                    int method = dfsMethod[depth];
+                    if (dfsEdge[depth] < successors[method].length) {
+                        int successor = successors[method][dfsEdge[depth]++];
+                        if (index[successor] == UNVISITED) {
+                            index[successor] = lowLink[successor] = counter++;
+                            stack[stackSize++] = successor;
+                            onStack[successor] = true;
+                            depth++;
+                            dfsMethod[depth] = successor;
+                            dfsEdge[depth] = 0;
+                        } else if (onStack[successor]) {
+                            lowLink[method] = Math.min(lowLink[method], index[successor]);
+                        }
+                        continue;
+                    }
+                    if (lowLink[method] == index[method]) {
+                        // The method is the root of a component, its members are on top of the stack
+                        int component = labels.size();
+                        BitSet label = new BitSet();
+                        int member;
+                        int first = stackSize;
+                        do {
+                            member = stack[--first];
+                            onStack[member] = false;
+                            componentOf[member] = component;
+                        } while (member != method);
+                        for (int i = first; i < stackSize; i++) {
+                            member = stack[i];
+                            for (int target : directTargets[member]) {
+                                label.set(target);
+                            }
+                            for (int successor : successors[member]) {
+                                // Components of the successors are complete, except for this one
+                                if (!onStack[successor] && componentOf[successor] != component) {
+                                    label.or(labels.get(componentOf[successor]));
+                                }
+                            }
+                        }
+                        stackSize = first;
+                        labels.add(label);
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = dfsMethod[depth];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[method]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The plain form of an index: the names of the entry points and third-party methods, and for each entry point
+     * the positions of the third-party methods it reaches.
+     */
+    public record Data(List<String> entryPoints, List<String> thirdPartyMethods, List<int[]> reaches) {
+    }
+
+    /**
+     * The distinct third-party methods a path from the given method can end in after one call: its own searched
+     * third-party callees, if asked for, and those of the entry points it calls, as target ids assigned on first sight.
+     * The path search starts at the direct caller of a third-party method, so a direct caller that is an entry point
+     * is passed through.
+     */
+    private static int[] directTargets(CallGraph cg, MethodSignature method, Set<MethodSignature> entryPoints,
+                                       Predicate<MethodSignature> isThirdParty,
+                                       BiPredicate<MethodSignature, MethodSignature> isSearched,
+                                       Map<String, Integer> targetIds, boolean ownCallees) {
+        BitSet ids = new BitSet();
+        if (ownCallees) {
+            addThirdPartyCallees(cg, method, isThirdParty, isSearched, targetIds, ids);
+        }
+        for (CallGraph.Call call : cg.callsFrom(method)) {
+            MethodSignature callee = call.getTargetMethodSignature();
+            if (entryPoints.contains(callee) && !callee.equals(method) && cg.containsMethod(callee)) {
+                addThirdPartyCallees(cg, callee, isThirdParty, isSearched, targetIds, ids);
+            }
+        }
+        return ids.stream().toArray();
+    }
+
+    private static void addThirdPartyCallees(CallGraph cg, MethodSignature method,
+                                             Predicate<MethodSignature> isThirdParty,
+                                             BiPredicate<MethodSignature, MethodSignature> isSearched,
+                                             Map<String, Integer> targetIds, BitSet ids) {
+        for (CallGraph.Call call : cg.callsFrom(method)) {
+            MethodSignature callee = call.getTargetMethodSignature();
+            if (isThirdParty.test(callee) && isSearched.test(method, callee)) {
+                ids.set(targetIds.computeIfAbsent(MethodId.of(callee).filteredName(), k -> targetIds.size()));
+            }
+        }
+    }
+
+    /**
+     * The distinct interior callees of a method, as interior ids. Calls to entry points are left out, a path does not
+     * pass through them.
+     */
+    private static int[] interiorCallees(CallGraph cg, MethodSignature method,
+                                         Map<MethodSignature, Integer> interiorIds) {
+        BitSet ids = new BitSet();
+        for (CallGraph.Call call : cg.callsFrom(method)) {
+            Integer interiorId = interiorIds.get(call.getTargetMethodSignature());
+            if (interiorId != null) {
+                ids.set(interiorId);
+            }
+        }
+        return ids.stream().toArray();
+    }
+}
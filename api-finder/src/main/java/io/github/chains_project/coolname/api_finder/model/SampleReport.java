@@ -0,0 +1,36 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * The totals of all (entry point, third-party method) pairs of a project, estimated from the paths of a uniform random
+ * sample of the pairs. The population is counted exactly, only the paths are searched for the sample alone. The
+ * sample is drawn with the given seed, so the same seed draws the same sample from the same jar.
+ * <p>
+ * The analyzed pairs are fewer than the sampled ones if the deadline passed. They are still a uniform sample, the
+ * sampled pairs are searched in a random order.
+ */
+public record SampleReport(
+        long seed,
+        long population,
+        int sampleSize,
+        int analyzed,
+        double confidence,
+        List<Estimate> estimates
+) {
+
+    /**
+     * An estimated quantity and its confidence interval. The interval is missing when fewer than two pairs were
+     * analyzed, and has no width when all pairs were.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Estimate(
+            String quantity,
+            double estimate,
+            Double lower,
+            Double upper
+    ) {
+    }
+}
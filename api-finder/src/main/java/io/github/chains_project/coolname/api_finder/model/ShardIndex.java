@@ -0,0 +1,28 @@
+package io.github.chains_project.coolname.api_finder.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * The index of a sharded full methods report: how the records were assigned to the shards and what each shard holds.
+ */
+public record ShardIndex(
+        String shardBy,
+        String hash,
+        int shardCount,
+        int records,
+        List<Shard> shards
+) {
+
+    /**
+     * One shard file, with the dependencies of its records when sharded by dependency.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Shard(
+            String file,
+            int records,
+            List<String> dependencies
+    ) {
+    }
+}
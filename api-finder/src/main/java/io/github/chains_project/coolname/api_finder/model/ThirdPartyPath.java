@@ -6,11 +6,37 @@ import java.util.List;
 
 /**
  * Represents a path from a public entry point to a third-party method.
- * This is the internal representation that keeps the MethodSignature objects.
+ * This is the internal representation that keeps the MethodSignature objects. The methods are stored in a shared
+ * {@link PathTree}, the path itself is only the last node in that tree.
  */
 public record ThirdPartyPath(
-        MethodSignature entryPoint,
-        MethodSignature thirdPartyMethod,
-        List<MethodSignature> path
+        PathTree tree,
+        int node
 ) {
+
+    public MethodSignature entryPoint() {
+        return tree.method(tree.root(node));
+    }
+
+    public MethodSignature thirdPartyMethod() {
+        return tree.method(node);
+    }
+
+    /**
+     * All methods of the path, from the entry point to the third-party method. Returns a new list.
+     */
+    public List<MethodSignature> path() {
+        return tree.path(node);
+    }
+
+    /**
+     * The methods of the project on the path, that is all methods except the third-party method. Returns a new list.
+     */
+    public List<MethodSignature> projectPath() {
+        return tree.path(tree.parent(node));
+    }
+
+    public int length() {
+        return tree.depth(node);
+    }
 }
@@ -0,0 +1,41 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for one top-level phase of an analysis run (see {@link PhaseRecorder}).
+ */
+@Name("coolname.AnalysisPhase")
+@Label("Analysis Phase")
+@Category({"Coolname", "Analysis"})
+@StackTrace(false)
+class AnalysisPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long cpuTime;
+
+    @Label("GC Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long gcTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+
+    @Label("Peak Heap")
+    @DataAmount
+    long peakHeap;
+
+    @Label("Retained Heap")
+    @Description("The heap usage after the last garbage collection at the end of the phase")
+    @DataAmount
+    long retainedHeap;
+
+    @Label("Counters")
+    @Description("The counters that changed during the phase")
+    String counters;
+}
@@ -0,0 +1,18 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a single step within a phase, e.g. one backward traversal or one method extraction
+ * (see {@link Metrics#time}). Steps are frequent, so only the ones that take at least a millisecond are recorded.
+ */
+@Name("coolname.AnalysisStep")
+@Label("Analysis Step")
+@Category({"Coolname", "Analysis"})
+@Threshold("1 ms")
+@StackTrace(false)
+class AnalysisStepEvent extends Event {
+
+    @Label("Step")
+    String step;
+}
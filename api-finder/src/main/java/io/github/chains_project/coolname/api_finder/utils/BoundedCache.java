@@ -0,0 +1,151 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A thread-safe cache with a maximum weight and least recently used eviction, for the caches of the extractors that
+ * used to be unbounded static maps and pinned whole ASTs and HTML line sets in batch runs.
+ * <p>
+ * Each entry has a weight, by default 1, so the maximum weight is the maximum number of entries. Caches of source
+ * code weigh their entries by length instead. Null values are cached like any other value, the extractors cache
+ * failed lookups too. Hits and misses are counted in {@link Metrics} under the name of the cache, evictions as
+ * {@code <name>.evictions}.
+ * <p>
+ * The limit of a cache can be changed by name with {@link #configure(Map)}, e.g. from the command line. The caches and
+ * their limits belong to the {@link Session} they are created in, the extractors keep theirs in {@link SessionLocal}
+ * fields.
+ */
+public final class BoundedCache<K, V> {
+
+    private static final SessionLocal<List<BoundedCache<?, ?>>> caches =
+            SessionLocal.withInitial(CopyOnWriteArrayList::new);
+    private static final SessionLocal<Map<String, Long>> configuredLimits =
+            SessionLocal.withInitial(ConcurrentHashMap::new);
+
+    private final String name;
+    private final long defaultMaximumWeight;
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    // Access order, so the first entry is the least recently used one
+    private final LinkedHashMap<K, Weighted<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maximumWeight;
+    private long weight;
+
+    private BoundedCache(String name, long maximumWeight, ToLongBiFunction<? super K, ? super V> weigher) {
+        this.name = name;
+        this.defaultMaximumWeight = maximumWeight;
+        this.maximumWeight = configuredLimits.get().getOrDefault(name, maximumWeight);
+        this.weigher = weigher;
+    }
+
+    /**
+     * A cache that holds at most the given number of entries.
+     */
+    public static <K, V> BoundedCache<K, V> bySize(String name, long maximumSize) {
+        return register(new BoundedCache<>(name, maximumSize, (key, value) -> 1));
+    }
+
+    /**
+     * A cache whose entries weigh at most the given weight together. Every entry weighs at least 1.
+     */
+    public static <K, V> BoundedCache<K, V> byWeight(String name, long maximumWeight,
+                                                     ToLongBiFunction<? super K, ? super V> weigher) {
+        return register(new BoundedCache<>(name, maximumWeight, weigher));
+    }
+
+    private static <K, V> BoundedCache<K, V> register(BoundedCache<K, V> cache) {
+        caches.get().add(cache);
+        return cache;
+    }
+
+    /**
+     * Set the maximum weight of the caches by name, e.g. {@code methodSource=64m}. Applies to the caches that exist
+     * and to the ones created later. Caches that are not named keep their default.
+     */
+    public static void configure(Map<String, Long> limits) {
+        configuredLimits.get().putAll(limits);
+        for (BoundedCache<?, ?> cache : caches.get()) {
+            Long limit = limits.get(cache.name);
+            if (limit != null) {
+                cache.setMaximumWeight(limit);
+            }
+        }
+    }
+
+    /**
+     * The statistics of all caches of the current session, in the order they were created.
+     */
+    public static List<CacheStats> allStats() {
+        return caches.get().stream().map(BoundedCache::stats).toList();
+    }
+
+    /**
+     * Return the cached value of the key, or load, cache and return it. The loader runs outside the lock, two
+     * threads that miss the same key at the same time both load it.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        synchronized (this) {
+            Weighted<V> cached = entries.get(key);
+            if (cached != null) {
+                Metrics.cacheHit(name);
+                return cached.value();
+            }
+        }
+        Metrics.cacheMiss(name);
+        V value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        long entryWeight = Math.max(1, weigher.applyAsLong(key, value));
+        Weighted<V> previous = entries.put(key, new Weighted<>(value, entryWeight));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entryWeight;
+        evict();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(name, entries.size(), weight, maximumWeight, Metrics.get(name + ".hits"),
+                Metrics.get(name + ".misses"), Metrics.get(name + ".evictions"));
+    }
+
+    private synchronized void setMaximumWeight(long limit) {
+        maximumWeight = limit > 0 ? limit : defaultMaximumWeight;
+        evict();
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits, the last added entry is kept even if it is
+     * heavier than the whole cache.
+     */
+    private void evict() {
+        Iterator<Weighted<V>> iterator = entries.values().iterator();
+        while (weight > maximumWeight && entries.size() > 1 && iterator.hasNext()) {
+            weight -= iterator.next().weight();
+            iterator.remove();
+            Metrics.increment(name + ".evictions");
+        }
+    }
+
+    private record Weighted<V>(V value, long weight) {
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+/**
+ * A snapshot of a {@link BoundedCache}: its content, its limit and how it was used during the current run.
+ */
+public record CacheStats(
+        String name,
+        int size,
+        long weight,
+        long maximumWeight,
+        long hits,
+        long misses,
+        long evictions
+) {
+
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d entries, weight %d of %d, %.1f%% hits (%d/%d), %d evictions", name, size,
+                weight, maximumWeight, 100 * hitRate(), hits, hits + misses, evictions);
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event with the hits, misses and evictions of one cache, committed at the end of an analysis run.
+ */
+@Name("coolname.CacheStats")
+@Label("Cache Statistics")
+@Category({"Coolname", "Analysis"})
+@StackTrace(false)
+class CacheStatsEvent extends Event {
+
+    @Label("Cache")
+    String cache;
+
+    @Label("Hits")
+    long hits;
+
+    @Label("Misses")
+    long misses;
+
+    @Label("Evictions")
+    long evictions;
+
+    @Label("Entries")
+    @Description("The number of entries at the end of the run, -1 for caches without a limit")
+    long size;
+}
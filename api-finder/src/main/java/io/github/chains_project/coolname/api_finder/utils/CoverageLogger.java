@@ -10,11 +10,29 @@ import java.util.*;
 
 public class CoverageLogger {
 
-    private static final File coverageFile = new File("coverage.json");
     private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-    private static final Set<String> loggedMethods = Collections.synchronizedSet(new HashSet<>());
+    private static final SessionLocal<Log> logs = SessionLocal.withInitial(Log::new);
 
-    public static synchronized void logCoverage(String methodSignature, boolean isCovered) {
+    /**
+     * Set the file the coverage results are logged to and forget the methods logged so far.
+     */
+    public static void setCoverageFile(File file) {
+        Log log = logs.get();
+        synchronized (log) {
+            log.coverageFile = file;
+            log.loggedMethods.clear();
+        }
+    }
+
+    public static void logCoverage(String methodSignature, boolean isCovered) {
+        Log log = logs.get();
+        synchronized (log) {
+            logCoverage(log.coverageFile, log.loggedMethods, methodSignature, isCovered);
+        }
+    }
+
+    private static void logCoverage(File coverageFile, Set<String> loggedMethods, String methodSignature,
+                                    boolean isCovered) {
         try {
             List<Map<String, Object>> entries = new ArrayList<>();
             // If file exists, read existing entries
@@ -39,4 +57,12 @@ public class CoverageLogger {
             e.printStackTrace();
         }
     }
+
+    /**
+     * The coverage log of a session.
+     */
+    private static final class Log {
+        File coverageFile = new File("coverage.json");
+        final Set<String> loggedMethods = new HashSet<>();
+    }
 }
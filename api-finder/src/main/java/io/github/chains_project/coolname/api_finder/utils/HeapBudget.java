@@ -0,0 +1,171 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Keeps the retained heap of an analysis run below a configured budget by degrading the analysis step by step,
+ * instead of letting the JVM die with an OutOfMemoryError on large modules:
+ * above 75% of the budget the caches are dropped (again after the next garbage collection, they fill up again),
+ * above 85% the path statistics are no longer collected (they need a full path enumeration per pair),
+ * above 95% the full methods report is streamed to disk instead of being collected and sorted in memory.
+ * <p>
+ * The retained heap is the heap usage after the last garbage collection, so garbage that is not collected yet does
+ * not trigger anything, and it is the heap of the whole JVM, including the other sessions that run in parallel.
+ * It only changes with a collection, so the caches are dropped at most once per collection: dropping them again
+ * before the next one would only throw away what was cached since, without knowing whether it helped.
+ * Without a budget, all checks are no-ops.
+ */
+public class HeapBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(HeapBudget.class);
+    private static final double DROP_CACHES = 0.75;
+    private static final double DISABLE_PATH_STATS = 0.85;
+    private static final double STREAM_OUTPUT = 0.95;
+
+    private static final SessionLocal<Budget> budget = SessionLocal.withInitial(Budget::new);
+
+    /**
+     * Set the budget and the action that drops the caches. A budget of zero or less disables the checks.
+     */
+    public static void configure(long budgetBytes, Runnable dropCachesAction) {
+        Budget current = budget.get();
+        synchronized (current) {
+            current.budgetBytes = budgetBytes;
+            current.dropCaches = dropCachesAction;
+        }
+        reset();
+    }
+
+    /**
+     * Only drop the caches on the given thread, or on any thread if it is null. The caches are not meant to be used
+     * by several threads at once, so a run that uses them on one thread only drops them there.
+     */
+    public static void setCacheOwner(Thread owner) {
+        Budget current = budget.get();
+        synchronized (current) {
+            current.cacheOwner = owner;
+        }
+    }
+
+    /**
+     * Forget the degradations of the previous run, the budget stays.
+     */
+    public static void reset() {
+        Budget current = budget.get();
+        current.pathStatsDisabled = false;
+        current.streamOutput = false;
+        current.lastDropCollections = -1;
+    }
+
+    /**
+     * Compare the retained heap with the budget and degrade the analysis if needed.
+     * Cheap enough to be called once per pair or path.
+     */
+    public static void check() {
+        Budget current = budget.get();
+        synchronized (current) {
+            if (current.budgetBytes <= 0) {
+                return;
+            }
+            long retained = retainedHeapBytes();
+            double usage = (double) retained / current.budgetBytes;
+            if (usage < DROP_CACHES) {
+                return;
+            }
+            long collections = collectionCount();
+            boolean owner = current.cacheOwner == null || current.cacheOwner == Thread.currentThread();
+            if (owner && collections != current.lastDropCollections) {
+                log.debug("Retained heap at {}% of the budget, dropping caches", Math.round(usage * 100));
+                current.dropCaches.run();
+                current.lastDropCollections = collections;
+                Metrics.increment("heapBudget.cacheDrops");
+            }
+            if (usage >= DISABLE_PATH_STATS && !current.pathStatsDisabled) {
+                log.warn("Retained heap at {} MB of a {} MB budget, path statistics are no longer collected",
+                        retained / (1024 * 1024), current.budgetBytes / (1024 * 1024));
+                current.pathStatsDisabled = true;
+            }
+            if (usage >= STREAM_OUTPUT && !current.streamOutput) {
+                log.warn("Retained heap at {} MB of a {} MB budget, the report is streamed and no longer sorted",
+                        retained / (1024 * 1024), current.budgetBytes / (1024 * 1024));
+                current.streamOutput = true;
+            }
+        }
+    }
+
+    public static boolean isPathStatsEnabled() {
+        return !budget.get().pathStatsDisabled;
+    }
+
+    public static boolean isStreamingOutput() {
+        return budget.get().streamOutput;
+    }
+
+    /**
+     * The heap usage after the last garbage collection, summed over all heap pools.
+     */
+    public static long retainedHeapBytes() {
+        long retained = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isValid()) {
+                continue;
+            }
+            // Null if the pool does not support it
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                retained += usage.getUsed();
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * The number of garbage collections so far, summed over all collectors.
+     */
+    private static long collectionCount() {
+        long collections = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 if the collector does not count them
+            collections += Math.max(0, collector.getCollectionCount());
+        }
+        return collections;
+    }
+
+    /**
+     * Parse a size such as 512m, 4g or 1073741824.
+     */
+    public static long parseSize(String size) {
+        String value = size.trim().toLowerCase();
+        long factor = 1;
+        switch (value.charAt(value.length() - 1)) {
+            case 'k' -> factor = 1024L;
+            case 'm' -> factor = 1024L * 1024;
+            case 'g' -> factor = 1024L * 1024 * 1024;
+            default -> {
+                return Long.parseLong(value);
+            }
+        }
+        return Long.parseLong(value.substring(0, value.length() - 1)) * factor;
+    }
+
+    /**
+     * The budget and the degradations of a session.
+     */
+    private static final class Budget {
+        long budgetBytes = -1;
+        Runnable dropCaches = () -> {
+        };
+        volatile boolean pathStatsDisabled;
+        volatile boolean streamOutput;
+        // The collection count when the caches were dropped last, -1 if they were not dropped yet
+        long lastDropCollections = -1;
+        Thread cacheOwner;
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import jdk.jfr.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Named counters of an analysis run, per {@link Session}: item counts (e.g. "pairs"), cache hits and misses (e.g.
+ * "slice.hits") and the number of calls and total time of the steps within a phase (e.g. "reachability.calls" and
+ * "reachability.nanos").
+ * <p>
+ * The counters that change during a phase are attached to the phase by {@link PhaseRecorder}. Timed steps also emit
+ * JFR events while a recording has them enabled, so a flight recording shows where the time goes.
+ * <p>
+ * Steps and cache lookups are counted once per call edge, pair or record, so the names of their counters are built
+ * once per step and cache, not on every call.
+ */
+public class Metrics {
+
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+    private static final String HITS = ".hits";
+    private static final String MISSES = ".misses";
+    private static final SessionLocal<Map<String, LongAdder>> counters =
+            SessionLocal.withInitial(ConcurrentHashMap::new);
+    private static final EventType STEP_EVENT = EventType.getEventType(AnalysisStepEvent.class);
+    // The names are the same in every session
+    private static final Map<String, StepCounters> stepCounters = new ConcurrentHashMap<>();
+    private static final Map<String, CacheCounters> cacheCounters = new ConcurrentHashMap<>();
+
+    public static void add(String counter, long amount) {
+        counters.get().computeIfAbsent(counter, k -> new LongAdder()).add(amount);
+    }
+
+    public static void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public static void cacheHit(String cache) {
+        increment(cacheCounters.computeIfAbsent(cache, CacheCounters::of).hits());
+    }
+
+    public static void cacheMiss(String cache) {
+        increment(cacheCounters.computeIfAbsent(cache, CacheCounters::of).misses());
+    }
+
+    /**
+     * Describe the hit rate of a cache that is not a {@link BoundedCache}.
+     */
+    public static String hitRate(String cache) {
+        long hits = get(cache + HITS);
+        long total = hits + get(cache + MISSES);
+        return String.format("%.1f%% hits (%d/%d)", total == 0 ? 0.0 : 100.0 * hits / total, hits, total);
+    }
+
+    /**
+     * Run a step, count it and add its duration to the step's total time.
+     */
+    public static <T> T time(String step, Supplier<T> body) {
+        StepCounters names = stepCounters.computeIfAbsent(step, StepCounters::of);
+        AnalysisStepEvent event = STEP_EVENT.isEnabled() ? new AnalysisStepEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            add(names.nanos(), System.nanoTime() - start);
+            increment(names.calls());
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.step = step;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    public static void time(String step, Runnable body) {
+        time(step, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public static long get(String counter) {
+        LongAdder adder = counters.get().get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * The current value of all counters, sorted by name.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.get().forEach((name, adder) -> snapshot.put(name, adder.sum()));
+        return snapshot;
+    }
+
+    /**
+     * The counters that changed between two snapshots, with the difference as value.
+     */
+    static Map<String, Long> difference(Map<String, Long> before, Map<String, Long> after) {
+        Map<String, Long> difference = new TreeMap<>();
+        after.forEach((name, value) -> {
+            long delta = value - before.getOrDefault(name, 0L);
+            if (delta != 0) {
+                difference.put(name, delta);
+            }
+        });
+        return difference;
+    }
+
+    /**
+     * Log the statistics of every cache that was used and emit a JFR event for it. The bounded caches report their
+     * size and evictions too, the other caches only their hits and misses.
+     */
+    public static void reportCaches() {
+        Map<String, CacheStats> bounded = new TreeMap<>();
+        BoundedCache.allStats().forEach(stats -> bounded.put(stats.name(), stats));
+        snapshot().keySet().stream()
+                .filter(name -> name.endsWith(HITS) || name.endsWith(MISSES))
+                .map(name -> name.substring(0, name.lastIndexOf('.')))
+                .distinct()
+                .forEach(cache -> {
+                    CacheStats stats = bounded.get(cache);
+                    if (stats != null) {
+                        log.info("Cache {}", stats);
+                    } else {
+                        log.info("Cache {}: {}", cache, hitRate(cache));
+                    }
+                    CacheStatsEvent event = new CacheStatsEvent();
+                    if (event.shouldCommit()) {
+                        event.cache = cache;
+                        event.hits = get(cache + HITS);
+                        event.misses = get(cache + MISSES);
+                        event.evictions = get(cache + ".evictions");
+                        event.size = stats != null ? stats.size() : -1;
+                        event.commit();
+                    }
+                });
+    }
+
+    public static void reset() {
+        counters.get().clear();
+    }
+
+    private record StepCounters(String nanos, String calls) {
+        static StepCounters of(String step) {
+            return new StepCounters(step + ".nanos", step + ".calls");
+        }
+    }
+
+    private record CacheCounters(String hits, String misses) {
+        static CacheCounters of(String cache) {
+            return new CacheCounters(cache + HITS, cache + MISSES);
+        }
+    }
+}
@@ -22,11 +22,11 @@ public class PackageMatcher {
 
     private static final Logger log = LoggerFactory.getLogger(PackageMatcher.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final Map<String, List<String>> dependencyMap = new HashMap<>();
+    // The loaded dependency map of each session, empty until it is loaded
+    private static final SessionLocal<DependencyMap> dependencyMap = SessionLocal.withInitial(DependencyMap::new);
     private static final List<String> ignoredPrefixes = Arrays.asList(
             "java.", "jdk.", "sun.", "com.sun."
     );
-    private static boolean loaded = false;
     private static final String DEFAULT_IGNORED_FILE = "ignored_packages.txt";
 
     /**
@@ -39,13 +39,11 @@ public class PackageMatcher {
      * @return The Maven coordinates or null if not found.
      */
     public static String getDependencyName(String packageName, Path packageMap) {
-        if (!loaded) {
-            loadDependencyMap(packageMap);
-        }
+        DependencyMap map = loaded(packageMap);
         if (packageName == null || packageName.isEmpty()) {
             return null;
         }
-        List<String> packageNames = dependencyMap.get(packageName);
+        List<String> packageNames = map.packages.get(packageName);
         if (packageNames == null || packageNames.isEmpty()) {
             return null;
         }
@@ -63,7 +61,26 @@ public class PackageMatcher {
         return null;
     }
 
-    private static void loadDependencyMap(Path packageMap) {
+    /**
+     * Load the package map now if it is not loaded yet, e.g. before the matcher is shared by several threads.
+     */
+    public static void load(Path packageMap) {
+        loaded(packageMap);
+    }
+
+    private static DependencyMap loaded(Path packageMap) {
+        DependencyMap map = dependencyMap.get();
+        if (!map.loaded) {
+            synchronized (map) {
+                if (!map.loaded) {
+                    loadDependencyMap(map, packageMap);
+                }
+            }
+        }
+        return map;
+    }
+
+    private static void loadDependencyMap(DependencyMap map, Path packageMap) {
         try {
             if (packageMap == null || !Files.exists(packageMap)) {
                 log.warn("Package map file does not exist: {}", packageMap);
@@ -72,13 +89,13 @@ public class PackageMatcher {
             try (InputStream inputStream = Files.newInputStream(packageMap)) {
                 Map<String, List<String>> loadedMap = objectMapper.readValue(inputStream, new TypeReference<>() {
                 });
-                dependencyMap.putAll(loadedMap);
+                map.packages.putAll(loadedMap);
                 log.info("Successfully loaded package dependency map from: {}", packageMap);
             }
         } catch (IOException e) {
             log.error("Error reading package-dependency-map from file: {}", packageMap, e);
         }
-        loaded = true;
+        map.loaded = true;
     }
 
     /**
@@ -122,14 +139,32 @@ public class PackageMatcher {
      * @return true if the package name exists in the dependency map, false otherwise.
      */
     public static boolean containsPackage(String packageName, Path packageMap) {
-        if (!loaded) {
-            loadDependencyMap(packageMap);
-        }
-        if (!loaded || dependencyMap.isEmpty()) {
+        DependencyMap map = loaded(packageMap);
+        if (map.packages.isEmpty()) {
             log.warn("Dependency map not loaded or empty when checking for package: {}", packageName);
             return false;
         }
-        return dependencyMap.containsKey(packageName);
+        return map.packages.containsKey(packageName);
+    }
+
+    /**
+     * Forget the loaded dependency map, so that the next lookup loads the package map of another project.
+     */
+    public static void clearCache() {
+        DependencyMap map = dependencyMap.get();
+        synchronized (map) {
+            map.packages.clear();
+            map.loaded = false;
+        }
+        log.debug("Cleared dependency map");
+    }
+
+    /**
+     * The package map of a session, read once and only read afterwards.
+     */
+    private static final class DependencyMap {
+        private final Map<String, List<String>> packages = new HashMap<>();
+        private volatile boolean loaded;
     }
 
 }
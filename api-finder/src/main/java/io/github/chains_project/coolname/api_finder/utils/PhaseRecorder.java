@@ -0,0 +1,221 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import io.github.chains_project.coolname.api_finder.model.PhaseMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records wall time, CPU time, GC time, allocated bytes, peak heap, retained heap and the changed {@link Metrics}
+ * counters of the phases of an analysis run. Every phase is also emitted as a JFR event, and the {@link HeapBudget}
+ * is checked after every phase.
+ * <p>
+ * The phases of an analysis are recorded on a single thread, but some of their work runs on other threads: the stages
+ * of the pipeline, the background build of the Spoon model, the parsing of the coverage reports and the parallel
+ * reading of the entry points. The CPU time and the allocated bytes of a phase are the ones of the recording thread
+ * plus the ones of the tasks wrapped with {@link #worker}, counted in the phase that is running when a task ends.
+ * The heap figures are the ones of the whole JVM, they include the other sessions running in parallel.
+ * Phases must not be nested, because the heap peaks are reset at the start of every phase.
+ * <p>
+ * The retained heap is the heap usage after the last garbage collection. That is cheap, but it may lag behind if no
+ * collection ran during the phase. With precise retained heap, a full collection is run after every phase instead,
+ * which is what the perf command does.
+ */
+public class PhaseRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(PhaseRecorder.class);
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final SessionLocal<List<PhaseMetrics>> phases = SessionLocal.withInitial(ArrayList::new);
+    private static final SessionLocal<AtomicBoolean> preciseRetainedHeap = SessionLocal.withInitial(AtomicBoolean::new);
+    private static final SessionLocal<WorkerUsage> workerUsage = SessionLocal.withInitial(WorkerUsage::new);
+    // Whether the current thread records a phase, its own usage is then already counted
+    private static final ThreadLocal<Boolean> recording = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Run the given phase and record its resource usage.
+     */
+    public static <T> T record(String phase, Supplier<T> body) {
+        List<MemoryPoolMXBean> heapPools = heapPools();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        Map<String, Long> countersBefore = Metrics.snapshot();
+        AnalysisPhaseEvent event = new AnalysisPhaseEvent();
+        event.begin();
+        WorkerUsage workers = workerUsage.get();
+        long gcStart = gcMillis();
+        long allocatedStart = allocatedBytes() + workers.allocatedBytes.sum();
+        long cpuStart = cpuNanos() + workers.cpuNanos.sum();
+        long wallStart = System.nanoTime();
+        recording.set(true);
+        try {
+            return body.get();
+        } finally {
+            recording.set(false);
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuNanos() + workers.cpuNanos.sum() - cpuStart;
+            long allocated = allocatedBytes() + workers.allocatedBytes.sum() - allocatedStart;
+            long gc = gcMillis() - gcStart;
+            long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+            if (preciseRetainedHeap.get().get()) {
+                System.gc();
+            }
+            long retainedHeap = HeapBudget.retainedHeapBytes();
+            Map<String, Long> counters = Metrics.difference(countersBefore, Metrics.snapshot());
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase;
+                event.cpuTime = cpu / 1_000_000;
+                event.gcTime = gc;
+                event.allocated = allocated;
+                event.peakHeap = peakHeap;
+                event.retainedHeap = retainedHeap;
+                event.counters = counters.toString();
+                event.commit();
+            }
+            List<PhaseMetrics> recorded = phases.get();
+            synchronized (recorded) {
+                recorded.add(new PhaseMetrics(phase, wall / 1_000_000, cpu / 1_000_000, gc, allocated, peakHeap,
+                        retainedHeap, counters));
+            }
+            HeapBudget.check();
+        }
+    }
+
+    public static void record(String phase, Runnable body) {
+        record(phase, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wrap a task of the current session that runs on another thread, e.g. on a thread pool, so that its CPU time and
+     * allocated bytes count towards the phases of the session.
+     */
+    public static <T> Callable<T> worker(Callable<T> task) {
+        WorkerUsage workers = workerUsage.get();
+        return () -> {
+            Usage start = workers.start();
+            try {
+                return task.call();
+            } finally {
+                workers.end(start);
+            }
+        };
+    }
+
+    /**
+     * Wrap a function of the current session that is applied on other threads, e.g. in a parallel stream.
+     */
+    public static <T, R> Function<T, R> worker(Function<T, R> function) {
+        WorkerUsage workers = workerUsage.get();
+        return value -> {
+            Usage start = workers.start();
+            try {
+                return function.apply(value);
+            } finally {
+                workers.end(start);
+            }
+        };
+    }
+
+    /**
+     * The phases recorded since the last reset, in the order they finished.
+     */
+    public static List<PhaseMetrics> getPhases() {
+        List<PhaseMetrics> recorded = phases.get();
+        synchronized (recorded) {
+            return new ArrayList<>(recorded);
+        }
+    }
+
+    /**
+     * Log the duration of the recorded phases.
+     */
+    public static void logPhases() {
+        for (PhaseMetrics phase : getPhases()) {
+            log.info("Phase {} took {} ms ({} ms CPU, {} ms GC), allocated {} MB, {} MB peak heap, {} MB retained",
+                    phase.phase(), phase.wallMillis(), phase.cpuMillis(), phase.gcMillis(),
+                    phase.allocatedBytes() / (1024 * 1024), phase.peakHeapBytes() / (1024 * 1024),
+                    phase.retainedHeapBytes() / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Run a full garbage collection after every phase, so that the retained heap is exact.
+     */
+    public static void setPreciseRetainedHeap(boolean precise) {
+        preciseRetainedHeap.get().set(precise);
+    }
+
+    public static void reset() {
+        List<PhaseMetrics> recorded = phases.get();
+        synchronized (recorded) {
+            recorded.clear();
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP && p.isValid())
+                .toList();
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 if the collector does not report it
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long allocatedBytes() {
+        // The allocation counter is only available in the HotSpot extension of the bean
+        if (threadBean instanceof com.sun.management.ThreadMXBean hotSpotBean
+                && hotSpotBean.isThreadAllocatedMemorySupported() && hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+            return hotSpotBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static long cpuNanos() {
+        if (!threadBean.isCurrentThreadCpuTimeSupported()) {
+            return 0;
+        }
+        return threadBean.getCurrentThreadCpuTime();
+    }
+
+    private record Usage(long cpuNanos, long allocatedBytes) {
+    }
+
+    /**
+     * The CPU time and the allocated bytes of the tasks of a session that ran on other threads.
+     */
+    private static final class WorkerUsage {
+        final LongAdder cpuNanos = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+
+        /**
+         * The usage of the current thread before a task, null on a recording thread, which counts itself.
+         */
+        Usage start() {
+            return recording.get() ? null : new Usage(PhaseRecorder.cpuNanos(), PhaseRecorder.allocatedBytes());
+        }
+
+        void end(Usage start) {
+            if (start != null) {
+                cpuNanos.add(PhaseRecorder.cpuNanos() - start.cpuNanos());
+                allocatedBytes.add(PhaseRecorder.allocatedBytes() - start.allocatedBytes());
+            }
+        }
+    }
+}
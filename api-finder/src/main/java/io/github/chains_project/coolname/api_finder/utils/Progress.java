@@ -0,0 +1,150 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.chains_project.coolname.api_finder.model.ProgressStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of the long loops of an analysis run, the path searches of the pairs and the extraction of the
+ * records, so that a run of several hours can be told apart from a hung one. At a fixed interval, the items done and
+ * remaining, the throughput, the estimated time left and the heap in use are logged and, if status files are
+ * enabled, written to the status file of the run for schedulers to poll. The status file is replaced atomically, a
+ * reader never sees half of it.
+ * <p>
+ * A loop reports once it starts, at every interval and when it is done. The interval is a minute unless configured,
+ * zero turns the reports off.
+ */
+public class Progress {
+
+    private static final Logger log = LoggerFactory.getLogger(Progress.class);
+    public static final long DEFAULT_INTERVAL_MILLIS = 60_000;
+
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final SessionLocal<Settings> settings = SessionLocal.withInitial(Settings::new);
+
+    private final String task;
+    private final long total;
+    private final long intervalNanos;
+    private final File statusFile;
+    private final long startNanos = System.nanoTime();
+    private long nextReportNanos;
+    private long done;
+
+    private Progress(String task, long total, Settings current) {
+        this.task = task;
+        this.total = total;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(current.intervalMillis);
+        this.statusFile = current.writeStatusFile ? current.statusFile : null;
+        this.nextReportNanos = startNanos + intervalNanos;
+    }
+
+    /**
+     * Set the interval of the reports, zero or less turns them off, and whether they are written to a status file.
+     */
+    public static void configure(long intervalMillis, boolean writeStatusFile) {
+        Settings current = settings.get();
+        current.intervalMillis = intervalMillis;
+        current.writeStatusFile = writeStatusFile;
+    }
+
+    /**
+     * Set the status file of the current run, it is only written if status files are enabled.
+     */
+    public static void setStatusFile(File file) {
+        settings.get().statusFile = file;
+    }
+
+    /**
+     * Start reporting a loop over the given number of items.
+     */
+    public static Progress start(String task, long total) {
+        Progress progress = new Progress(task, total, settings.get());
+        progress.report(false);
+        return progress;
+    }
+
+    /**
+     * One more item is done. Cheap enough to be called once per item, it only looks at the clock.
+     */
+    public void advance() {
+        done++;
+        if (intervalNanos > 0 && System.nanoTime() - nextReportNanos >= 0) {
+            report(false);
+            nextReportNanos = System.nanoTime() + intervalNanos;
+        }
+    }
+
+    /**
+     * The loop is done, possibly before all items were, e.g. when the deadline passed.
+     */
+    public void finish() {
+        report(true);
+    }
+
+    private void report(boolean finished) {
+        if (intervalNanos <= 0) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double itemsPerSecond = elapsedNanos == 0 ? 0 : done * 1e9 / elapsedNanos;
+        long remaining = Math.max(0, total - done);
+        long etaSeconds = finished ? 0 : itemsPerSecond == 0 ? -1 : (long) Math.ceil(remaining / itemsPerSecond);
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        ProgressStatus status = new ProgressStatus(task, finished, done, total, remaining, itemsPerSecond,
+                etaSeconds, TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), heap.getUsed(), heap.getMax(),
+                Instant.now().toString());
+        if (finished) {
+            log.info("{}: {} of {} done in {}, {} items/s, {} MB heap used", task, done, total,
+                    formatSeconds(status.elapsedSeconds()), String.format("%.1f", itemsPerSecond),
+                    heap.getUsed() >> 20);
+        } else {
+            log.info("{}: {} of {} done, {} remaining, {} items/s, ETA {}, {} MB heap used", task, done, total,
+                    remaining, String.format("%.1f", itemsPerSecond),
+                    etaSeconds < 0 ? "unknown" : formatSeconds(etaSeconds), heap.getUsed() >> 20);
+        }
+        if (statusFile != null) {
+            writeStatus(status);
+        }
+    }
+
+    private void writeStatus(ProgressStatus status) {
+        Path target = statusFile.toPath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            mapper.writeValue(temporary.toFile(), status);
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write the status file {}", statusFile, e);
+        }
+    }
+
+    private static String formatSeconds(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * The interval and the status file of a session.
+     */
+    private static final class Settings {
+        volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+        volatile boolean writeStatusFile;
+        volatile File statusFile;
+    }
+}
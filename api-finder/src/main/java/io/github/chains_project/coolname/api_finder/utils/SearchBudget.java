@@ -0,0 +1,140 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+/**
+ * Limits the work of the path searches, so that a run finishes in a predictable time even if some pairs make the
+ * searches explode: a maximum number of visited nodes per search, a maximum wall time per (public method,
+ * third-party method) pair and a deadline for the whole analysis.
+ * <p>
+ * A search that runs out of budget stops and is marked as truncated, the run continues with the next pair. Once the
+ * deadline has passed, the remaining pairs are skipped. Without a configuration, nothing is limited.
+ */
+public class SearchBudget {
+
+    // How many nodes a search visits between two looks at the clock
+    private static final int CLOCK_INTERVAL = 256;
+
+    private static final SessionLocal<Limits> limits = SessionLocal.withInitial(Limits::new);
+
+    /**
+     * Set the budgets, zero or less means unlimited. The deadline counts from the next {@link #start()}.
+     */
+    public static void configure(long maxNodes, long maxPairMillis, long totalMillis) {
+        Limits current = limits.get();
+        current.maxVisitedNodes = maxNodes;
+        current.maxPairNanos = maxPairMillis * 1_000_000;
+        current.totalNanos = totalMillis * 1_000_000;
+        start();
+    }
+
+    /**
+     * Start the deadline of an analysis run.
+     */
+    public static void start() {
+        Limits current = limits.get();
+        current.deadline = current.totalNanos > 0 ? System.nanoTime() + current.totalNanos : Long.MAX_VALUE;
+    }
+
+    public static boolean isDeadlinePassed() {
+        long deadline = limits.get().deadline;
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Start the budget of one pair. The searches for the same pair share it.
+     */
+    public static Search startSearch() {
+        Limits current = limits.get();
+        long now = System.nanoTime();
+        long pairDeadline = current.maxPairNanos > 0 ? now + current.maxPairNanos : Long.MAX_VALUE;
+        return new Search(current.maxVisitedNodes, Math.min(pairDeadline, current.deadline));
+    }
+
+    /**
+     * Parse a duration such as 500ms, 30s, 10m, 2h or a plain number of milliseconds.
+     */
+    public static long parseDuration(String duration) {
+        String value = duration.trim().toLowerCase();
+        if (value.endsWith("ms")) {
+            return Long.parseLong(value.substring(0, value.length() - 2));
+        }
+        long factor;
+        switch (value.charAt(value.length() - 1)) {
+            case 's' -> factor = 1000L;
+            case 'm' -> factor = 60 * 1000L;
+            case 'h' -> factor = 60 * 60 * 1000L;
+            default -> {
+                return Long.parseLong(value);
+            }
+        }
+        return Long.parseLong(value.substring(0, value.length() - 1)) * factor;
+    }
+
+    /**
+     * The limits of a session.
+     */
+    private static final class Limits {
+        volatile long maxVisitedNodes;
+        volatile long maxPairNanos;
+        volatile long totalNanos;
+        volatile long deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * The budget of the searches for one pair.
+     */
+    public static final class Search {
+
+        private final long maxNodes;
+        private final long deadline;
+        private long visited;
+        private String truncatedBy;
+
+        private Search(long maxNodes, long deadline) {
+            this.maxNodes = maxNodes;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Count a visited node and tell whether the search must stop. Once exhausted, it stays exhausted.
+         */
+        public boolean exhausted() {
+            if (truncatedBy != null) {
+                return true;
+            }
+            visited++;
+            if (maxNodes > 0 && visited > maxNodes) {
+                truncatedBy = "visited nodes";
+            } else if (deadline != Long.MAX_VALUE && visited % CLOCK_INTERVAL == 0
+                    && System.nanoTime() - deadline > 0) {
+                truncatedBy = isDeadlinePassed() ? "analysis deadline" : "pair time";
+            }
+            if (truncatedBy != null) {
+                Metrics.increment("budget.truncated");
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * A budget for the next search of the same pair: it may visit as many nodes again, but the time is shared.
+         */
+        public Search next() {
+            return new Search(maxNodes, deadline);
+        }
+
+        public boolean isTruncated() {
+            return truncatedBy != null;
+        }
+
+        /**
+         * The budget that ran out, or null if the search is not truncated.
+         */
+        public String truncatedBy() {
+            return truncatedBy;
+        }
+
+        public long visited() {
+            return visited;
+        }
+    }
+}
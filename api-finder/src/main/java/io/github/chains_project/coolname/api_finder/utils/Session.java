@@ -0,0 +1,73 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of one analysis: the caches, counters and configuration the static helpers keep in {@link SessionLocal}
+ * fields. A thread works in the session it is bound to, and in the global session when it is not bound to any, so
+ * several analyses can run in parallel threads of one JVM without seeing each other's caches.
+ * <p>
+ * The binding is inherited by the threads a bound thread starts, e.g. the stages of the pipeline and the thread that
+ * builds the Spoon model. Threads of a pool that existed before keep the session they were started in.
+ */
+public final class Session {
+
+    private static final Session GLOBAL = new Session();
+    private static final InheritableThreadLocal<Session> bound = new InheritableThreadLocal<>();
+
+    private final Map<SessionLocal<?>, Object> values = new ConcurrentHashMap<>();
+
+    /**
+     * The session of the current thread.
+     */
+    public static Session current() {
+        Session session = bound.get();
+        return session != null ? session : GLOBAL;
+    }
+
+    /**
+     * Run the body in this session on the current thread, and bind the thread to its previous session afterwards.
+     */
+    public <T> T call(Callable<T> body) throws Exception {
+        Session previous = bound.get();
+        bound.set(this);
+        try {
+            return body.call();
+        } finally {
+            bound.set(previous);
+        }
+    }
+
+    public void run(Runnable body) {
+        try {
+            call(() -> {
+                body.run();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // A Runnable cannot throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(SessionLocal<T> local) {
+        Object value = values.get(local);
+        if (value == null) {
+            // Not computeIfAbsent, the initial value may create other values of the session, e.g. a cache that
+            // registers itself
+            synchronized (this) {
+                value = values.get(local);
+                if (value == null) {
+                    value = local.initialValue();
+                    values.put(local, value);
+                }
+            }
+        }
+        return (T) value;
+    }
+}
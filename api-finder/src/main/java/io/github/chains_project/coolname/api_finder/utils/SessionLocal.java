@@ -0,0 +1,32 @@
+package io.github.chains_project.coolname.api_finder.utils;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A value that every {@link Session} has its own copy of, like a {@link ThreadLocal} per analysis instead of per
+ * thread. The copy of a session is created on first use.
+ */
+public final class SessionLocal<T> {
+
+    private final Supplier<? extends T> initial;
+
+    private SessionLocal(Supplier<? extends T> initial) {
+        this.initial = initial;
+    }
+
+    public static <T> SessionLocal<T> withInitial(Supplier<? extends T> initial) {
+        return new SessionLocal<>(Objects.requireNonNull(initial));
+    }
+
+    /**
+     * The copy of the current session.
+     */
+    public T get() {
+        return Session.current().get(this);
+    }
+
+    T initialValue() {
+        return Objects.requireNonNull(initial.get(), "The initial value of a session local must not be null");
+    }
+}
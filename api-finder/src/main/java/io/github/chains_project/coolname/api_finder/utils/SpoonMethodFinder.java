@@ -8,9 +8,7 @@ import spoon.reflect.declaration.CtMethod;
 import spoon.reflect.declaration. CtType;
 import sootup.core.signatures.MethodSignature;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,21 +19,15 @@ public class SpoonMethodFinder {
 
     private static final Logger log = LoggerFactory.getLogger(SpoonMethodFinder.class);
     // Type cache:  maps class name to CtType for faster lookups
-    private static final Map<String, CtType<?>> typeCache = new HashMap<>();
+    private static final SessionLocal<BoundedCache<String, CtType<?>>> typeCache =
+            SessionLocal.withInitial(() -> BoundedCache.bySize("spoonType", 50_000));
 
     /**
      * Find a type with caching to speed up repeated lookups.
      */
     public static CtType<?> findTypeCached(CtModel spoonModel, String fullyQualifiedName) {
-        // Check cache first
-        if (typeCache.containsKey(fullyQualifiedName)) {
-            return typeCache.get(fullyQualifiedName);
-        }
-        // Not in cache, do the lookup
-        CtType<?> type = findType(spoonModel, fullyQualifiedName);
-        // Cache the result (even if null)
-        typeCache.put(fullyQualifiedName, type);
-        return type;
+        // Check cache first, not found types are cached as null
+        return typeCache.get().get(fullyQualifiedName, name -> findType(spoonModel, name));
     }
 
     /**
@@ -203,14 +195,14 @@ public class SpoonMethodFinder {
      * Useful for testing or when processing multiple projects.
      */
     public static void clearCache() {
-        typeCache.clear();
+        typeCache.get().clear();
         log.debug("Cleared type cache");
     }
 
     /**
      * Get cache statistics for monitoring/debugging.
      */
-    public static String getCacheStats() {
-        return String.format("Type cache: %d entries", typeCache.size());
+    public static CacheStats getCacheStats() {
+        return typeCache.get().stats();
     }
 }
@@ -0,0 +1,72 @@
+package io.github.chains_project.coolname.api_finder;
+
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import io.github.chains_project.coolname.api_finder.model.PathTree;
+import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import io.github.chains_project.coolname.api_finder.utils.CoverageLogger;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import sootup.callgraph.CallGraph;
+import sootup.core.signatures.MethodSignature;
+import sootup.java.core.views.JavaView;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The analysis state of one project, computed once per benchmark trial: the view, the call graph, the third-party
+ * pairs, the paths and the Spoon model. The benchmarks then measure single steps of the pipeline on this state.
+ */
+@State(Scope.Benchmark)
+public class AnalyzedProject {
+
+    Path packageMapPath;
+    String sourceRootPath;
+    JavaView view;
+    Set<MethodSignature> entryPoints;
+    CallGraph callGraph;
+    Map<MethodSignature, Set<MethodSignature>> reverseCallGraph;
+    List<Map.Entry<MethodSignature, MethodSignature>> thirdPartyPairs;
+    // (public method, third-party method) pairs, as searched by findShortestDirectPathWithStats
+    List<Map.Entry<MethodSignature, MethodSignature>> reachingPairs;
+    List<ThirdPartyPath> thirdPartyPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MethodExtractor.clearCaches();
+        // The pair search logs coverage results, keep them out of the working directory
+        File coverageLog = Files.createTempFile("coolname-bench-coverage", ".json").toFile();
+        coverageLog.deleteOnExit();
+        CoverageLogger.setCoverageFile(coverageLog);
+        packageMapPath = Fixtures.packageMapPath();
+        sourceRootPath = Fixtures.sourceRootPath();
+        MethodExtractor.loadIgnoredPrefixes(Fixtures.packageName());
+        view = MethodExtractor.createJavaView(Fixtures.jarPath(), Fixtures.packageName());
+        entryPoints = MethodExtractor.detectEntryPoints(view, Fixtures.packageName());
+        callGraph = MethodExtractor.buildCallGraph(view, entryPoints);
+        reverseCallGraph = MethodExtractor.buildReverseCallGraph(callGraph);
+        // No coverage filtering, we want all pairs
+        thirdPartyPairs = new ArrayList<>(
+                MethodExtractor.findAllThirdPartyMethodPairs(callGraph, packageMapPath, List.of()));
+        reachingPairs = new ArrayList<>();
+        for (Map.Entry<MethodSignature, MethodSignature> pair : thirdPartyPairs) {
+            for (MethodSignature publicMethod : MethodExtractor.findReachingMethods(reverseCallGraph, pair.getKey(),
+                    entryPoints, packageMapPath)) {
+                reachingPairs.add(Map.entry(publicMethod, pair.getValue()));
+            }
+        }
+        PathTree pathTree = new PathTree();
+        MethodExtractor.collectThirdPartyPaths(callGraph, entryPoints, packageMapPath, List.of(), pathTree,
+                new ArrayList<PathStats>());
+        thirdPartyPaths = pathTree.paths();
+        if (thirdPartyPaths.isEmpty()) {
+            throw new IllegalStateException("The benchmark project has no third-party paths");
+        }
+        SourceCodeExtractor.getModel(sourceRootPath);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.chains_project.coolname.api_finder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for the JaCoCo report lookups of CoverageFilter, checking the third-party methods logged in the
+ * examples against the HTML reports of the benchmark project.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoverageBenchmark {
+
+    private List<File> htmlFiles;
+    // Third-party methods as class name + "." + method name, the format used by isMethodCovered
+    private List<String> thirdPartyMethods;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (Stream<java.nio.file.Path> files = Files.walk(Fixtures.jacocoDir())) {
+            htmlFiles = files.filter(f -> f.toString().endsWith(".java.html")).map(java.nio.file.Path::toFile)
+                    .toList();
+        }
+        thirdPartyMethods = new ArrayList<>();
+        for (String name : Fixtures.exampleMethodNames()) {
+            int paramStart = name.indexOf('(');
+            thirdPartyMethods.add(paramStart < 0 ? name : name.substring(0, paramStart));
+        }
+    }
+
+    /**
+     * Lookups once the HTML reports are parsed and cached.
+     */
+    @Benchmark
+    public void isMethodCovered(Blackhole blackhole) throws Exception {
+        for (File htmlFile : htmlFiles) {
+            for (String method : thirdPartyMethods) {
+                blackhole.consume(CoverageFilter.isMethodCovered(htmlFile, method));
+            }
+        }
+    }
+
+    /**
+     * Lookups including parsing the HTML reports.
+     */
+    @Benchmark
+    public void isMethodCoveredCold(Blackhole blackhole) throws Exception {
+        CoverageFilter.clearCache();
+        for (File htmlFile : htmlFiles) {
+            blackhole.consume(CoverageFilter.isMethodCovered(htmlFile, thirdPartyMethods.get(0)));
+        }
+    }
+}
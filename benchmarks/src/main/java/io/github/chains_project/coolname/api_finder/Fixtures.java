@@ -0,0 +1,158 @@
+package io.github.chains_project.coolname.api_finder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import sootup.core.signatures.MethodSignature;
+import sootup.java.core.JavaIdentifierFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Inputs of the benchmarks.
+ * <p>
+ * By default, the benchmarks run on the small sample project bundled in the benchmark jar. It is copied to a
+ * temporary folder first, because SootUp and Spoon need real files. To benchmark a real project instead, pass
+ * -Dbench.jar, -Dbench.package, -Dbench.packageMap, -Dbench.sources and -Dbench.jacoco to the benchmark run.
+ * <p>
+ * The coverage.json and package-map.json files of the examples folder are bundled as well. They give us thousands of
+ * real third-party method names to feed into the name based benchmarks.
+ */
+final class Fixtures {
+
+    static final String JAR_PROPERTY = "bench.jar";
+    static final String PACKAGE_PROPERTY = "bench.package";
+    static final String PACKAGE_MAP_PROPERTY = "bench.packageMap";
+    static final String SOURCES_PROPERTY = "bench.sources";
+    static final String JACOCO_PROPERTY = "bench.jacoco";
+
+    private static final String SAMPLE_PACKAGE = "org.example.sample";
+    private static final List<String> SAMPLE_FILES = List.of(
+            "sample.jar",
+            "package-map.json",
+            "jacoco/org.example.sample/Catalog.java.html",
+            "jacoco/org.example.sample/Digest.java.html",
+            "jacoco/org.example.sample/Parser.java.html",
+            "sample-project/pom.xml",
+            "sample-project/src/main/java/org/example/lib/Checksum.java",
+            "sample-project/src/main/java/org/example/lib/Codec.java",
+            "sample-project/src/main/java/org/example/lib/Store.java",
+            "sample-project/src/main/java/org/example/sample/Catalog.java",
+            "sample-project/src/main/java/org/example/sample/Digest.java",
+            "sample-project/src/main/java/org/example/sample/Inventory.java",
+            "sample-project/src/main/java/org/example/sample/Parser.java",
+            "sample-project/src/main/java/org/example/sample/ReportBuilder.java"
+    );
+    // The examples with coverage data, see the examples folder in the repository root
+    private static final List<String> EXAMPLES = List.of(
+            "checkstyle", "commons-validator", "corenlp", "flink", "graphhopper", "guice", "immutables", "jcabi",
+            "jooby", "lettuce", "mybatis", "pdfbox", "poi-tl", "scribejava", "tablesaw", "tika", "undertow"
+    );
+    private static Path sampleDir;
+
+    private Fixtures() {
+    }
+
+    static String jarPath() {
+        return System.getProperty(JAR_PROPERTY, sampleFile("sample.jar").toString());
+    }
+
+    static String packageName() {
+        return System.getProperty(PACKAGE_PROPERTY, SAMPLE_PACKAGE);
+    }
+
+    static Path packageMapPath() {
+        return Path.of(System.getProperty(PACKAGE_MAP_PROPERTY, sampleFile("package-map.json").toString()));
+    }
+
+    static String sourceRootPath() {
+        return System.getProperty(SOURCES_PROPERTY, sampleFile("sample-project").toString());
+    }
+
+    static Path jacocoDir() {
+        return Path.of(System.getProperty(JACOCO_PROPERTY, sampleFile("jacoco").toString()));
+    }
+
+    /**
+     * All third-party method names logged in the coverage.json files of the examples, e.g.
+     * org.apache.commons.logging.Log.debug(java.lang.Object, java.lang.Throwable).
+     */
+    static List<String> exampleMethodNames() {
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> names = new ArrayList<>();
+        for (String example : EXAMPLES) {
+            try (InputStream in = resource("examples/" + example + "-data/coverage.json")) {
+                if (in == null) {
+                    continue;
+                }
+                List<Map<String, Object>> entries = mapper.readValue(in, new TypeReference<>() {
+                });
+                entries.forEach(entry -> names.add((String) entry.get("method")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The example method names turned into SootUp signatures. The return type is not logged, so we use void.
+     */
+    static List<MethodSignature> exampleMethodSignatures() {
+        JavaIdentifierFactory factory = JavaIdentifierFactory.getInstance();
+        List<MethodSignature> signatures = new ArrayList<>();
+        for (String name : exampleMethodNames()) {
+            int paramStart = name.indexOf('(');
+            String qualifiedMethod = paramStart < 0 ? name : name.substring(0, paramStart);
+            int lastDot = qualifiedMethod.lastIndexOf('.');
+            if (lastDot < 0) {
+                continue;
+            }
+            List<String> params = new ArrayList<>();
+            if (paramStart >= 0) {
+                String paramList = name.substring(paramStart + 1, name.lastIndexOf(')')).trim();
+                if (!paramList.isEmpty()) {
+                    Arrays.stream(paramList.split(",")).map(String::trim).forEach(params::add);
+                }
+            }
+            signatures.add(factory.getMethodSignature(qualifiedMethod.substring(0, lastDot),
+                    qualifiedMethod.substring(lastDot + 1), "void", params));
+        }
+        return signatures;
+    }
+
+    private static synchronized Path sampleFile(String name) {
+        if (sampleDir == null) {
+            sampleDir = extractSample();
+        }
+        return sampleDir.resolve(name);
+    }
+
+    private static Path extractSample() {
+        try {
+            Path dir = Files.createTempDirectory("coolname-bench");
+            for (String file : SAMPLE_FILES) {
+                Path target = dir.resolve(file);
+                Files.createDirectories(target.getParent());
+                try (InputStream in = resource("fixture/" + file)) {
+                    if (in == null) {
+                        throw new IOException("Missing benchmark fixture: " + file);
+                    }
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream resource(String name) {
+        return Fixtures.class.getClassLoader().getResourceAsStream(name);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.chains_project.coolname.api_finder;
+
+import io.github.chains_project.coolname.api_finder.model.PathStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sootup.core.signatures.MethodSignature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the call graph traversals of MethodExtractor. Each operation covers all pairs of the project, so
+ * the numbers are comparable to the time the reachability phase spends in the step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReachabilityBenchmark {
+
+    // Same depth limit as used by findShortestDirectPathWithStats
+    private static final int MAX_DEPTH = 19;
+
+    @Benchmark
+    public Map<MethodSignature, Set<MethodSignature>> buildReverseCallGraph(AnalyzedProject project) {
+        return MethodExtractor.buildReverseCallGraph(project.callGraph);
+    }
+
+    @Benchmark
+    public void findReachingMethods(AnalyzedProject project, Blackhole blackhole) {
+        for (Map.Entry<MethodSignature, MethodSignature> pair : project.thirdPartyPairs) {
+            blackhole.consume(MethodExtractor.findReachingMethods(project.reverseCallGraph, pair.getKey(),
+                    project.entryPoints, project.packageMapPath));
+        }
+    }
+
+    @Benchmark
+    public void findShortestDirectPathWithStats(AnalyzedProject project, Blackhole blackhole) {
+        List<PathStats> stats = new ArrayList<>();
+        for (Map.Entry<MethodSignature, MethodSignature> pair : project.reachingPairs) {
+            blackhole.consume(MethodExtractor.findShortestDirectPathWithStats(project.callGraph, pair.getKey(),
+                    pair.getValue(), project.packageMapPath, stats));
+        }
+        blackhole.consume(stats);
+    }
+
+    @Benchmark
+    public void countPathsAndStats(AnalyzedProject project, Blackhole blackhole) {
+        for (Map.Entry<MethodSignature, MethodSignature> pair : project.reachingPairs) {
+            blackhole.consume(MethodExtractor.countPathsAndStats(project.callGraph, pair.getKey(),
+                    pair.getValue(), project.packageMapPath, MAX_DEPTH));
+        }
+    }
+}
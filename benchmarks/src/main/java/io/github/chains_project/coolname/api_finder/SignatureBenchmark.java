@@ -0,0 +1,36 @@
+package io.github.chains_project.coolname.api_finder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sootup.core.signatures.MethodSignature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the method name filtering that runs for every path element, record and log line of the output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureBenchmark {
+
+    private List<MethodSignature> signatures;
+
+    @Setup(Level.Trial)
+    public void setUp(AnalyzedProject project) {
+        signatures = new ArrayList<>(Fixtures.exampleMethodSignatures());
+        signatures.addAll(project.callGraph.getMethodSignatures());
+    }
+
+    @Benchmark
+    public void getFilteredMethodSignature(Blackhole blackhole) {
+        for (MethodSignature signature : signatures) {
+            blackhole.consume(MethodExtractor.getFilteredMethodSignature(signature));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.chains_project.coolname.api_finder;
+
+import io.github.chains_project.coolname.api_finder.model.ThirdPartyPath;
+import io.github.chains_project.coolname.api_finder.utils.SpoonMethodFinder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sootup.core.signatures.MethodSignature;
+import spoon.reflect.CtModel;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Spoon based steps of the output phase: type lookup, backward slicing and condition counting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+
+    private CtModel model;
+    // Declaring classes of all project methods on the paths
+    private List<String> classNames;
+    // Slicing criteria: a method on a path and the invocations of the next method in it
+    private List<CtExecutable<?>> sliceMethods;
+    private List<CtElement> sliceTargets;
+
+    @Setup(Level.Trial)
+    public void setUp(AnalyzedProject project) {
+        model = SourceCodeExtractor.getModel(project.sourceRootPath);
+        Set<String> names = new LinkedHashSet<>();
+        sliceMethods = new ArrayList<>();
+        sliceTargets = new ArrayList<>();
+        for (ThirdPartyPath tp : project.thirdPartyPaths) {
+            List<MethodSignature> path = tp.path();
+            for (int i = 0; i < path.size() - 1; i++) {
+                names.add(path.get(i).getDeclClassType().getFullyQualifiedName());
+                CtExecutable<?> executable = MethodSlicer.findExecutableInModel(model, path.get(i));
+                if (executable == null || executable.getBody() == null) {
+                    continue;
+                }
+                for (CtElement target : MethodSlicer.findTargetInvocations(executable, path.get(i + 1))) {
+                    sliceMethods.add(executable);
+                    sliceTargets.add(target);
+                }
+            }
+        }
+        classNames = new ArrayList<>(names);
+    }
+
+    @Benchmark
+    public void findType(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(SpoonMethodFinder.findType(model, className));
+        }
+    }
+
+    @Benchmark
+    public void computeBackwardSlice(Blackhole blackhole) {
+        for (int i = 0; i < sliceMethods.size(); i++) {
+            blackhole.consume(MethodSlicer.computeBackwardSlice(sliceMethods.get(i), sliceTargets.get(i)));
+        }
+    }
+
+    /**
+     * Counting with a cold condition cache, as in the first pass over the paths of a project.
+     */
+    @Benchmark
+    public int countConditionsInPath(AnalyzedProject project) {
+        RecordCounter.clearCache();
+        int total = 0;
+        for (ThirdPartyPath tp : project.thirdPartyPaths) {
+            total += RecordCounter.countConditionsInPath(tp.projectPath(), project.sourceRootPath);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.lib;
+
+public class Checksum {
+    private long value;
+
+    public Checksum() {
+    }
+
+    public void update(byte[] data) {
+        for (byte b : data) {
+            value = value * 31 + b;
+        }
+    }
+
+    public long getValue() {
+        return value;
+    }
+}
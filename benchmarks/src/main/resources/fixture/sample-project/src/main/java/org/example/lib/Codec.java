@@ -0,0 +1,11 @@
+package org.example.lib;
+
+public class Codec {
+    public static String encode(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    public String decode(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.lib;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Store {
+    private final Map<String, String> values = new HashMap<>();
+
+    public void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public boolean remove(String key) {
+        return values.remove(key) != null;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.sample;
+
+import org.example.lib.Codec;
+import org.example.lib.Store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Catalog {
+    private final Store store;
+    private final List<String> keys = new ArrayList<>();
+
+    public Catalog(Store store) {
+        this.store = store;
+    }
+
+    public void add(String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        keys.add(key);
+        store.put(key, encodeValue(value));
+    }
+
+    public String find(String key) {
+        String value = lookup(key, 0);
+        if (value == null) {
+            return "";
+        }
+        return new Parser("c").parse(value);
+    }
+
+    public int prune(int limit) {
+        int removed = 0;
+        while (keys.size() > limit) {
+            String key = keys.remove(0);
+            if (store.remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    String lookup(String key, int depth) {
+        if (depth > 3) {
+            return null;
+        }
+        String value = store.get(key);
+        if (value == null && key.length() > 1) {
+            return lookup(key.substring(1), depth + 1);
+        }
+        return value;
+    }
+
+    private String encodeValue(String value) {
+        String prefixed = "v:" + value;
+        return Codec.encode(prefixed);
+    }
+}
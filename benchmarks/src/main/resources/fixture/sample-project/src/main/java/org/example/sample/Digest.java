@@ -0,0 +1,33 @@
+package org.example.sample;
+
+import org.example.lib.Checksum;
+import org.example.lib.Codec;
+
+public class Digest {
+    public static long digest(String input) {
+        byte[] bytes = input.getBytes();
+        Checksum checksum = new Checksum();
+        for (int i = 0; i < 2; i++) {
+            checksum.update(bytes);
+        }
+        return checksum.getValue();
+    }
+
+    public String roundTrip(String input) {
+        Parser parser = new Parser("x");
+        String parsed = parser.parse(input);
+        return new Codec().decode(parsed);
+    }
+
+    public long combined(String input) {
+        int length = input.length();
+        if (length > 3) {
+            return digest(input) + length;
+        }
+        return helper(input);
+    }
+
+    private long helper(String input) {
+        return input.isEmpty() ? 0 : digest(input.substring(1));
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.sample;
+
+import org.example.lib.Checksum;
+import org.example.lib.Store;
+
+public class Inventory {
+    private final Catalog catalog;
+    private int version;
+
+    public Inventory() {
+        this.catalog = new Catalog(new Store());
+    }
+
+    public void restock(String item, int amount) {
+        for (int i = 0; i < amount; i++) {
+            catalog.add(item + i, String.valueOf(i));
+        }
+        version++;
+        audit();
+    }
+
+    public String describe(String item) {
+        String found = catalog.find(item);
+        return found.isEmpty() ? item : found;
+    }
+
+    public long fingerprint() {
+        Checksum checksum = new Checksum();
+        for (String key : catalog.getKeys()) {
+            checksum.update(key.getBytes());
+        }
+        return checksum.getValue() + version;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    private void audit() {
+        if (version % 10 == 0) {
+            catalog.prune(100);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.sample;
+
+import org.example.lib.Codec;
+
+public class Parser {
+    private final String prefix;
+
+    public Parser(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String parse(String input) {
+        if (input == null) {
+            return "";
+        }
+        String trimmed = input.trim();
+        return normalize(trimmed);
+    }
+
+    private String normalize(String value) {
+        String withPrefix = prefix + value;
+        return Codec.encode(withPrefix);
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String ignored) {
+    }
+}
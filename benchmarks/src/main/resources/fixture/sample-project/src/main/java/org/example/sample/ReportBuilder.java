@@ -0,0 +1,59 @@
+package org.example.sample;
+
+import org.example.lib.Checksum;
+import org.example.lib.Codec;
+
+public class ReportBuilder {
+    private final Inventory inventory;
+    private String title = "report";
+
+    public ReportBuilder(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    public static ReportBuilder create() {
+        return new ReportBuilder(new Inventory());
+    }
+
+    public String build(String item, int copies, boolean signed) {
+        String header = title.toUpperCase();
+        int count = copies;
+        if (count < 0) {
+            count = 0;
+        }
+        String body = inventory.describe(item);
+        String unused = header + body;
+        StringBuilder builder = new StringBuilder(header);
+        for (int i = 0; i < count; i++) {
+            builder.append(body);
+        }
+        String text = builder.toString();
+        switch (count) {
+            case 0:
+                text = "";
+                break;
+            default:
+                break;
+        }
+        if (signed) {
+            text = sign(text, count);
+        }
+        return Codec.encode(text);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    private String sign(String text, int count) {
+        long seed = inventory.fingerprint();
+        Checksum checksum = new Checksum();
+        String combined = text + seed + count;
+        checksum.update(combined.getBytes());
+        return text + "#" + checksum.getValue();
+    }
+}